@@ -0,0 +1,49 @@
+package com.zjc.aggregate;
+
+/**
+ * 虚拟聚合池聚合策略接口
+ * 实现类注册为Spring Bean即可被自动发现，按@Order顺序展示
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+public interface AggregationStrategy {
+
+    /**
+     * 获取策略名称，保存在虚拟池的aggregate_strategy字段中
+     * 
+     * @return 策略名称
+     */
+    String getName();
+
+    /**
+     * 获取策略显示名称
+     * 
+     * @return 显示名称
+     */
+    String getLabel();
+
+    /**
+     * 获取策略描述
+     * 
+     * @return 策略描述
+     */
+    String getDescription();
+
+    /**
+     * 是否使用虚拟池的权重配置
+     * 
+     * @return true时调用方按weight_config传入成员权重，否则权重恒为1
+     */
+    default boolean usesWeights() {
+        return false;
+    }
+
+    /**
+     * 创建单个指标的累加器
+     * 累加器会被调用方重复使用（reset后再次累加），实现时应避免在add中分配对象
+     * 
+     * @return 累加器
+     */
+    Combiner newCombiner();
+}
@@ -0,0 +1,64 @@
+package com.zjc.aggregate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聚合策略注册表
+ * 收集所有AggregationStrategy类型的Bean，按名称查找
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class AggregationStrategyRegistry {
+
+    /**
+     * 未指定策略时使用的默认策略
+     */
+    public static final String DEFAULT_STRATEGY = "sum";
+
+    private final Map<String, AggregationStrategy> strategies = new LinkedHashMap<>();
+
+    @Autowired
+    public AggregationStrategyRegistry(List<AggregationStrategy> strategyBeans) {
+        for (AggregationStrategy strategy : strategyBeans) {
+            AggregationStrategy existing = strategies.putIfAbsent(strategy.getName(), strategy);
+            if (existing != null) {
+                log.warn("聚合策略名称重复，忽略: {} ({})", strategy.getName(), strategy.getClass().getName());
+            }
+        }
+        log.info("已注册聚合策略: {}", strategies.keySet());
+    }
+
+    /**
+     * 判断策略是否存在
+     */
+    public boolean contains(String name) {
+        return name != null && strategies.containsKey(name);
+    }
+
+    /**
+     * 获取策略，名称为空或不存在时返回默认策略
+     */
+    public AggregationStrategy get(String name) {
+        AggregationStrategy strategy = StringUtils.hasText(name) ? strategies.get(name) : null;
+        return strategy != null ? strategy : strategies.get(DEFAULT_STRATEGY);
+    }
+
+    /**
+     * 获取所有策略，按注册顺序
+     */
+    public List<AggregationStrategy> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(strategies.values()));
+    }
+}
@@ -0,0 +1,38 @@
+package com.zjc.aggregate;
+
+/**
+ * 单个指标的聚合累加器
+ * 支持合并（分段计算后汇总）；可逆的实现见InvertibleCombiner，还支持移除已加入的值
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+public interface Combiner {
+
+    /**
+     * 加入一个成员的值
+     * 
+     * @param value 指标值
+     * @param weight 成员权重，不使用权重的策略忽略此参数
+     */
+    void add(int value, double weight);
+
+    /**
+     * 合并同一策略的另一个累加器
+     * 
+     * @param other 另一个累加器
+     */
+    void merge(Combiner other);
+
+    /**
+     * 清空累加状态
+     */
+    void reset();
+
+    /**
+     * 获取聚合结果
+     * 
+     * @return 聚合结果，没有加入任何值时返回0
+     */
+    int result();
+}
@@ -0,0 +1,19 @@
+package com.zjc.aggregate;
+
+/**
+ * 可逆的聚合累加器
+ * 除加入外还支持移除已加入的值，成员数值变化时可以先移除旧值再加入新值，不必全量重算
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+public interface InvertibleCombiner extends Combiner {
+
+    /**
+     * 移除一个之前加入的值
+     * 
+     * @param value 指标值
+     * @param weight 成员权重
+     */
+    void remove(int value, double weight);
+}
@@ -0,0 +1,99 @@
+package com.zjc.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * 非负整数的分位数草图
+ * 按对数划分固定数量的桶（相对误差1%），数组在创建时一次分配，
+ * 加入、移除、合并都只修改计数，不分配对象
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class QuantileSketch {
+
+    /**
+     * 相对误差
+     */
+    private static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /**
+     * 覆盖int范围所需的桶数，下标0单独记录0值
+     */
+    private static final int BUCKETS = (int) Math.ceil(Math.log(Integer.MAX_VALUE) / LOG_GAMMA) + 2;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+
+    public void add(int value) {
+        counts[indexOf(value)]++;
+        count++;
+    }
+
+    public void remove(int value) {
+        int index = indexOf(value);
+        if (counts[index] > 0) {
+            counts[index]--;
+            count--;
+        }
+    }
+
+    public void merge(QuantileSketch other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        count = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 获取分位数
+     * 
+     * @param quantile 分位点，取值[0, 1]
+     * @return 分位数估计值，没有数据时返回0
+     */
+    public int quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.floor(quantile * (count - 1));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(BUCKETS - 1);
+    }
+
+    private static int indexOf(int value) {
+        if (value <= 0) {
+            return 0;
+        }
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA) + 1;
+    }
+
+    /**
+     * 桶的代表值，取桶边界的中点使相对误差对称
+     */
+    private static int valueOf(int index) {
+        if (index == 0) {
+            return 0;
+        }
+        double value = 2 * Math.pow(GAMMA, index - 1) / (GAMMA + 1);
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(value));
+    }
+}
@@ -0,0 +1,122 @@
+package com.zjc.aggregate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 号池状态聚合器
+ * 按同一策略为有效、无效、冷却、总数四个指标各持有一个累加器，遍历一次成员即可得到全部结果
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class StatusAggregator {
+
+    private final Combiner valid;
+    private final Combiner invalid;
+    private final Combiner cooling;
+    private final Combiner total;
+    private int poolCount;
+
+    public StatusAggregator(AggregationStrategy strategy) {
+        this.valid = strategy.newCombiner();
+        this.invalid = strategy.newCombiner();
+        this.cooling = strategy.newCombiner();
+        this.total = strategy.newCombiner();
+    }
+
+    /**
+     * 加入一个成员的状态
+     */
+    public void add(int validCount, int invalidCount, int coolingCount, int totalCount, double weight) {
+        valid.add(validCount, weight);
+        invalid.add(invalidCount, weight);
+        cooling.add(coolingCount, weight);
+        total.add(totalCount, weight);
+        poolCount++;
+    }
+
+    /**
+     * 移除一个之前加入的成员状态，只有isInvertible为true时可用
+     */
+    public void remove(int validCount, int invalidCount, int coolingCount, int totalCount, double weight) {
+        if (!isInvertible()) {
+            throw new UnsupportedOperationException("该聚合策略不支持移除");
+        }
+        ((InvertibleCombiner) valid).remove(validCount, weight);
+        ((InvertibleCombiner) invalid).remove(invalidCount, weight);
+        ((InvertibleCombiner) cooling).remove(coolingCount, weight);
+        ((InvertibleCombiner) total).remove(totalCount, weight);
+        poolCount--;
+    }
+
+    /**
+     * 合并同一策略的另一个聚合器
+     */
+    public void merge(StatusAggregator other) {
+        valid.merge(other.valid);
+        invalid.merge(other.invalid);
+        cooling.merge(other.cooling);
+        total.merge(other.total);
+        poolCount += other.poolCount;
+    }
+
+    public void reset() {
+        valid.reset();
+        invalid.reset();
+        cooling.reset();
+        total.reset();
+        poolCount = 0;
+    }
+
+    /**
+     * 是否支持增量移除，策略的累加器为InvertibleCombiner时才支持
+     */
+    public boolean isInvertible() {
+        return valid instanceof InvertibleCombiner;
+    }
+
+    public int getValidCount() {
+        return valid.result();
+    }
+
+    public int getInvalidCount() {
+        return invalid.result();
+    }
+
+    public int getCoolingCount() {
+        return cooling.result();
+    }
+
+    public int getTotalCount() {
+        return total.result();
+    }
+
+    /**
+     * 已加入的成员数量
+     */
+    public int getPoolCount() {
+        return poolCount;
+    }
+
+    /**
+     * 聚合压力值（有效数量占总数的百分比）
+     * 
+     * @return 压力值，总数为0时返回null
+     */
+    public BigDecimal getPressure() {
+        return calculatePressure(getValidCount(), getTotalCount());
+    }
+
+    /**
+     * 虚拟池压力值的统一计算方式
+     */
+    public static BigDecimal calculatePressure(int validCount, int totalCount) {
+        if (totalCount <= 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(validCount)
+                .divide(BigDecimal.valueOf(totalCount), 4, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(100));
+    }
+}
@@ -0,0 +1,99 @@
+package com.zjc.aggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 虚拟聚合池的稠密权重向量
+ * 由weight_config（key: 号池ID或"vp:"加下级虚拟池ID, value: 权重）按成员槽位顺序展开，未配置的成员权重为1，
+ * 聚合时按槽位取权重传给累加器
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class WeightVector {
+
+    /**
+     * 未配置权重的成员使用的默认权重
+     */
+    public static final double DEFAULT_WEIGHT = 1.0;
+
+    /**
+     * 下级虚拟池在权重配置中的key前缀
+     */
+    public static final String VIRTUAL_POOL_KEY_PREFIX = "vp:";
+
+    private final double[] weights;
+
+    private WeightVector(double[] weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * 按成员顺序展开权重配置
+     *
+     * @param memberIds 成员号池ID，下标即槽位
+     * @param weightConfig 权重配置，key为号池ID字符串，非法权重按默认值处理
+     * @return 权重向量
+     */
+    public static WeightVector of(List<Long> memberIds, Map<String, Object> weightConfig) {
+        List<String> keys = new ArrayList<>(memberIds.size());
+        for (Long memberId : memberIds) {
+            keys.add(String.valueOf(memberId));
+        }
+        return ofKeys(keys, weightConfig);
+    }
+
+    /**
+     * 按成员key顺序展开权重配置
+     *
+     * @param memberKeys 成员在权重配置中的key，下标即槽位
+     * @param weightConfig 权重配置，非法权重按默认值处理
+     * @return 权重向量
+     */
+    public static WeightVector ofKeys(List<String> memberKeys, Map<String, Object> weightConfig) {
+        double[] weights = new double[memberKeys.size()];
+        for (int i = 0; i < weights.length; i++) {
+            Double weight = weightConfig != null ? parseWeight(weightConfig.get(memberKeys.get(i))) : null;
+            weights[i] = weight != null && weight >= 0 ? weight : DEFAULT_WEIGHT;
+        }
+        return new WeightVector(weights);
+    }
+
+    /**
+     * 下级虚拟池在权重配置中的key
+     */
+    public static String virtualPoolKey(Long virtualPoolId) {
+        return VIRTUAL_POOL_KEY_PREFIX + virtualPoolId;
+    }
+
+    /**
+     * 解析单个权重值
+     *
+     * @return 权重，无法解析时返回null
+     */
+    public static Double parseWeight(Object value) {
+        if (value instanceof Number) {
+            double weight = ((Number) value).doubleValue();
+            return Double.isFinite(weight) ? weight : null;
+        }
+        if (value instanceof String) {
+            try {
+                double weight = Double.parseDouble(((String) value).trim());
+                return Double.isFinite(weight) ? weight : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    public double get(int slot) {
+        return weights[slot];
+    }
+}
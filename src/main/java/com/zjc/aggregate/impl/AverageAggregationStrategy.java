@@ -0,0 +1,74 @@
+package com.zjc.aggregate.impl;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.Combiner;
+import com.zjc.aggregate.InvertibleCombiner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 平均值聚合策略
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(2)
+public class AverageAggregationStrategy implements AggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "average";
+    }
+
+    @Override
+    public String getLabel() {
+        return "平均值";
+    }
+
+    @Override
+    public String getDescription() {
+        return "计算所有号池的平均值";
+    }
+
+    @Override
+    public Combiner newCombiner() {
+        return new AverageCombiner();
+    }
+
+    static final class AverageCombiner implements InvertibleCombiner {
+
+        private long sum;
+        private long count;
+
+        @Override
+        public void add(int value, double weight) {
+            sum += value;
+            count++;
+        }
+
+        @Override
+        public void merge(Combiner other) {
+            AverageCombiner that = (AverageCombiner) other;
+            sum += that.sum;
+            count += that.count;
+        }
+
+        @Override
+        public void reset() {
+            sum = 0;
+            count = 0;
+        }
+
+        @Override
+        public int result() {
+            return count > 0 ? (int) (sum / count) : 0;
+        }
+
+        @Override
+        public void remove(int value, double weight) {
+            sum -= value;
+            count--;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.zjc.aggregate.impl;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.Combiner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 最大值聚合策略
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(5)
+public class MaxAggregationStrategy implements AggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "max";
+    }
+
+    @Override
+    public String getLabel() {
+        return "最大值";
+    }
+
+    @Override
+    public String getDescription() {
+        return "取所有号池中的最大值";
+    }
+
+    @Override
+    public Combiner newCombiner() {
+        return new MaxCombiner();
+    }
+
+    static final class MaxCombiner implements Combiner {
+
+        private int max = Integer.MIN_VALUE;
+        private boolean empty = true;
+
+        @Override
+        public void add(int value, double weight) {
+            max = Math.max(max, value);
+            empty = false;
+        }
+
+        @Override
+        public void merge(Combiner other) {
+            MaxCombiner that = (MaxCombiner) other;
+            if (!that.empty) {
+                add(that.max, 1.0);
+            }
+        }
+
+        @Override
+        public void reset() {
+            max = Integer.MIN_VALUE;
+            empty = true;
+        }
+
+        @Override
+        public int result() {
+            return empty ? 0 : max;
+        }
+    }
+}
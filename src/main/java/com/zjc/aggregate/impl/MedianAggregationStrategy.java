@@ -0,0 +1,35 @@
+package com.zjc.aggregate.impl;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 中位数聚合策略
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(6)
+public class MedianAggregationStrategy extends QuantileAggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "median";
+    }
+
+    @Override
+    public String getLabel() {
+        return "中位数";
+    }
+
+    @Override
+    public String getDescription() {
+        return "取所有号池数值的中位数，不受个别号池异常值影响";
+    }
+
+    @Override
+    protected double getQuantile() {
+        return 0.5;
+    }
+}
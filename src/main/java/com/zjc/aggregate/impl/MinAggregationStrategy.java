@@ -0,0 +1,68 @@
+package com.zjc.aggregate.impl;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.Combiner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 最小值聚合策略
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(4)
+public class MinAggregationStrategy implements AggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "min";
+    }
+
+    @Override
+    public String getLabel() {
+        return "最小值";
+    }
+
+    @Override
+    public String getDescription() {
+        return "取所有号池中的最小值";
+    }
+
+    @Override
+    public Combiner newCombiner() {
+        return new MinCombiner();
+    }
+
+    static final class MinCombiner implements Combiner {
+
+        private int min = Integer.MAX_VALUE;
+        private boolean empty = true;
+
+        @Override
+        public void add(int value, double weight) {
+            min = Math.min(min, value);
+            empty = false;
+        }
+
+        @Override
+        public void merge(Combiner other) {
+            MinCombiner that = (MinCombiner) other;
+            if (!that.empty) {
+                add(that.min, 1.0);
+            }
+        }
+
+        @Override
+        public void reset() {
+            min = Integer.MAX_VALUE;
+            empty = true;
+        }
+
+        @Override
+        public int result() {
+            return empty ? 0 : min;
+        }
+    }
+}
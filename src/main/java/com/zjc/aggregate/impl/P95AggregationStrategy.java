@@ -0,0 +1,35 @@
+package com.zjc.aggregate.impl;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 95分位聚合策略
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(7)
+public class P95AggregationStrategy extends QuantileAggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "p95";
+    }
+
+    @Override
+    public String getLabel() {
+        return "95分位";
+    }
+
+    @Override
+    public String getDescription() {
+        return "取所有号池数值的95分位数";
+    }
+
+    @Override
+    protected double getQuantile() {
+        return 0.95;
+    }
+}
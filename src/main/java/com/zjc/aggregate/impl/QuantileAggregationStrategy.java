@@ -0,0 +1,63 @@
+package com.zjc.aggregate.impl;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.Combiner;
+import com.zjc.aggregate.InvertibleCombiner;
+import com.zjc.aggregate.QuantileSketch;
+
+/**
+ * 分位数聚合策略基类
+ * 基于分位数草图计算，结果相对误差在1%以内，支持移除和合并
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+public abstract class QuantileAggregationStrategy implements AggregationStrategy {
+
+    /**
+     * 获取分位点
+     * 
+     * @return 分位点，取值[0, 1]
+     */
+    protected abstract double getQuantile();
+
+    @Override
+    public Combiner newCombiner() {
+        return new QuantileCombiner(getQuantile());
+    }
+
+    static final class QuantileCombiner implements InvertibleCombiner {
+
+        private final double quantile;
+        private final QuantileSketch sketch = new QuantileSketch();
+
+        QuantileCombiner(double quantile) {
+            this.quantile = quantile;
+        }
+
+        @Override
+        public void add(int value, double weight) {
+            sketch.add(value);
+        }
+
+        @Override
+        public void merge(Combiner other) {
+            sketch.merge(((QuantileCombiner) other).sketch);
+        }
+
+        @Override
+        public void reset() {
+            sketch.reset();
+        }
+
+        @Override
+        public int result() {
+            return sketch.quantile(quantile);
+        }
+
+        @Override
+        public void remove(int value, double weight) {
+            sketch.remove(value);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.zjc.aggregate.impl;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.Combiner;
+import com.zjc.aggregate.InvertibleCombiner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 求和聚合策略
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(1)
+public class SumAggregationStrategy implements AggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "sum";
+    }
+
+    @Override
+    public String getLabel() {
+        return "求和";
+    }
+
+    @Override
+    public String getDescription() {
+        return "将所有号池的数值相加";
+    }
+
+    @Override
+    public Combiner newCombiner() {
+        return new SumCombiner();
+    }
+
+    static final class SumCombiner implements InvertibleCombiner {
+
+        private long sum;
+
+        @Override
+        public void add(int value, double weight) {
+            sum += value;
+        }
+
+        @Override
+        public void merge(Combiner other) {
+            sum += ((SumCombiner) other).sum;
+        }
+
+        @Override
+        public void reset() {
+            sum = 0;
+        }
+
+        @Override
+        public int result() {
+            return (int) sum;
+        }
+
+        @Override
+        public void remove(int value, double weight) {
+            sum -= value;
+        }
+    }
+}
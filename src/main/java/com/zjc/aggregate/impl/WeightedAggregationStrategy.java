@@ -0,0 +1,73 @@
+package com.zjc.aggregate.impl;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.Combiner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 加权平均聚合策略
+ * 浮点累加值反复加减会累积误差，因此不支持移除，由调用方按成员重新计算
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+@Order(3)
+public class WeightedAggregationStrategy implements AggregationStrategy {
+
+    @Override
+    public String getName() {
+        return "weighted";
+    }
+
+    @Override
+    public String getLabel() {
+        return "加权平均";
+    }
+
+    @Override
+    public String getDescription() {
+        return "根据权重配置计算加权平均值";
+    }
+
+    @Override
+    public boolean usesWeights() {
+        return true;
+    }
+
+    @Override
+    public Combiner newCombiner() {
+        return new WeightedCombiner();
+    }
+
+    static final class WeightedCombiner implements Combiner {
+
+        private double weightedSum;
+        private double weightSum;
+
+        @Override
+        public void add(int value, double weight) {
+            weightedSum += weight * value;
+            weightSum += weight;
+        }
+
+        @Override
+        public void merge(Combiner other) {
+            WeightedCombiner that = (WeightedCombiner) other;
+            weightedSum += that.weightedSum;
+            weightSum += that.weightSum;
+        }
+
+        @Override
+        public void reset() {
+            weightedSum = 0;
+            weightSum = 0;
+        }
+
+        @Override
+        public int result() {
+            return weightSum > 0 ? (int) (weightedSum / weightSum) : 0;
+        }
+    }
+}
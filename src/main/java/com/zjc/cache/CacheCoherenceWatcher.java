@@ -0,0 +1,357 @@
+package com.zjc.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.zjc.entity.Pool;
+import com.zjc.entity.PoolStatus;
+import com.zjc.entity.VirtualPool;
+import com.zjc.event.CatalogChangeType;
+import com.zjc.event.PoolChangedEvent;
+import com.zjc.mapper.PoolStatusMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 多进程缓存一致性检查
+ * 其他进程（只读副本所跟随的写入实例、其他采集实例、导入脚本）修改同一个数据库后，刷新本进程的内存缓存。
+ * SQLite下用一个独立的只读连接定时读取PRAGMA data_version，没有任何提交时只有这一次查询；
+ * 有提交时再读取change_signal表，扣除本进程自己发布的次数后，只刷新其他进程改变过的主题：
+ * 配置变化时重新加载号池目录和虚拟池索引，并以外部事件通知数据源绑定等缓存；
+ * 状态变化时按自增ID读取新增的状态记录，依次更新最新状态缓存、迷你趋势图和虚拟池聚合值，
+ * 与采集入库时的更新路径一致，重复应用本进程写入的记录不会改变结果。
+ * 其他数据库没有data_version，直接按间隔读取change_signal表
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.coherence", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CacheCoherenceWatcher {
+
+    /**
+     * 单次读取的状态记录数
+     */
+    private static final int STATUS_BATCH_SIZE = 5000;
+
+    private static final List<String> TOPICS = Arrays.asList(ChangeSignal.CATALOG, ChangeSignal.STATUS);
+
+    @Value("${spring.datasource.url}")
+    private String databaseUrl;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PoolStatusMapper poolStatusMapper;
+
+    @Autowired
+    private ChangeSignal changeSignal;
+
+    @Autowired
+    private PoolCatalog poolCatalog;
+
+    @Autowired
+    private VirtualPoolMembershipIndex virtualPoolMembershipIndex;
+
+    @Autowired
+    private VirtualPoolHierarchy virtualPoolHierarchy;
+
+    @Autowired
+    private VirtualPoolAggregateIndex virtualPoolAggregateIndex;
+
+    @Autowired
+    private LatestPoolStatusCache latestPoolStatusCache;
+
+    @Autowired
+    private PoolSparklineStore poolSparklineStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 检查用的独立连接，只在检查线程中使用
+     */
+    private Connection watchConnection;
+
+    private Long lastDataVersion;
+
+    /**
+     * 其他进程造成的版本号（表中版本号减去本进程发布的次数）
+     * key: 主题, value: 已同步的版本号
+     */
+    private final Map<String, Long> foreignVersions = new HashMap<>();
+
+    /**
+     * 已同步的最大状态记录ID
+     */
+    private long lastStatusId;
+
+    private long refreshCount;
+
+    private volatile boolean ready;
+
+    /**
+     * 在各缓存预热之前记下当前的版本号和状态记录位置，预热期间其他进程写入的数据会在第一次刷新时补上
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void start() {
+        try {
+            lastDataVersion = readDataVersion();
+            readVersions().forEach((topic, version) ->
+                    foreignVersions.put(topic, version - changeSignal.getPublishedCount(topic)));
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM pool_status", Long.class);
+            lastStatusId = maxId != null ? maxId : 0;
+            ready = true;
+            log.info("缓存一致性检查已启动, 方式: {}, 变更信号: {}, 状态记录位置: {}",
+                    isSqlite() ? "data_version" : "change_signal", foreignVersions, lastStatusId);
+        } catch (Exception e) {
+            log.error("缓存一致性检查启动失败", e);
+            closeWatchConnection();
+        }
+    }
+
+    /**
+     * 检查其他进程的修改并刷新受影响的缓存
+     */
+    @Scheduled(fixedDelayString = "${app.coherence.poll-millis:1000}")
+    public synchronized void poll() {
+        if (!ready) {
+            return;
+        }
+
+        try {
+            Long dataVersion = readDataVersion();
+            if (dataVersion != null && dataVersion.equals(lastDataVersion)) {
+                // 没有任何连接提交过修改
+                return;
+            }
+
+            Map<String, Long> versions = readVersions();
+            for (String topic : TOPICS) {
+                Long version = versions.get(topic);
+                if (version == null) {
+                    continue;
+                }
+                long foreign = version - changeSignal.getPublishedCount(topic);
+                Long previous = foreignVersions.get(topic);
+                // 本进程刚发布、计数尚未更新时会短暂偏大，只会多刷新一次
+                if (previous != null && foreign > previous) {
+                    refresh(topic);
+                }
+                foreignVersions.put(topic, foreign);
+            }
+            lastDataVersion = dataVersion;
+        } catch (Exception e) {
+            log.warn("缓存一致性检查失败, 错误: {}", e.getMessage());
+            closeWatchConnection();
+        }
+    }
+
+    /**
+     * 获取检查状态
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("mode", isSqlite() ? "data_version" : "change_signal");
+        statistics.put("dataVersion", lastDataVersion);
+        statistics.put("foreignVersions", new HashMap<>(foreignVersions));
+        statistics.put("lastStatusId", lastStatusId);
+        statistics.put("refreshes", refreshCount);
+        return statistics;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        ready = false;
+        closeWatchConnection();
+    }
+
+    private void refresh(String topic) {
+        refreshCount++;
+        if (ChangeSignal.CATALOG.equals(topic)) {
+            reloadCatalog();
+        } else if (ChangeSignal.STATUS.equals(topic)) {
+            applyNewStatuses();
+        }
+    }
+
+    /**
+     * 重新加载号池目录和虚拟池索引
+     * 配置有变化或已删除的号池以外部事件通知其他缓存，外部事件不会再次发布变更信号
+     */
+    private void reloadCatalog() {
+        Map<Long, Pool> previousPools = poolCatalog.getPoolEntities().stream()
+                .collect(Collectors.toMap(Pool::getId, Function.identity()));
+        List<Long> previousVirtualPools = poolCatalog.getVirtualPools().stream()
+                .map(VirtualPool::getId)
+                .collect(Collectors.toList());
+
+        poolCatalog.warmUp();
+
+        List<VirtualPool> virtualPools = new ArrayList<>(poolCatalog.getVirtualPools());
+        List<Long> currentVirtualPools = virtualPools.stream().map(VirtualPool::getId).collect(Collectors.toList());
+        for (Long id : previousVirtualPools) {
+            if (!currentVirtualPools.contains(id)) {
+                // 与删除虚拟池时的顺序一致：聚合值需在层级关系移除前清理
+                virtualPoolAggregateIndex.remove(id);
+                virtualPoolHierarchy.remove(id);
+                virtualPoolMembershipIndex.remove(id);
+            }
+        }
+
+        // 成员关系和层级关系全部更新后，再按层级从下到上重建聚合值
+        for (VirtualPool virtualPool : virtualPools) {
+            virtualPoolMembershipIndex.refresh(virtualPool);
+            virtualPoolHierarchy.refresh(virtualPool);
+        }
+        virtualPools.sort(Comparator.comparingInt(vp -> virtualPoolHierarchy.getRank(vp.getId())));
+        for (VirtualPool virtualPool : virtualPools) {
+            virtualPoolAggregateIndex.refresh(virtualPool);
+        }
+        virtualPoolAggregateIndex.flush();
+
+        List<Long> saved = new ArrayList<>();
+        for (Pool pool : poolCatalog.getPoolEntities()) {
+            Pool previous = previousPools.remove(pool.getId());
+            if (previous == null || !sameConfig(previous, pool)) {
+                saved.add(pool.getId());
+            }
+        }
+        List<Long> deleted = new ArrayList<>(previousPools.keySet());
+        if (!saved.isEmpty()) {
+            eventPublisher.publishEvent(new PoolChangedEvent(saved, CatalogChangeType.SAVED, true));
+        }
+        if (!deleted.isEmpty()) {
+            deleted.forEach(poolSparklineStore::remove);
+            eventPublisher.publishEvent(new PoolChangedEvent(deleted, CatalogChangeType.DELETED, true));
+        }
+        log.info("其他进程修改了配置，已重新加载, 变更号池数: {}, 删除号池数: {}, 虚拟池数: {}",
+                saved.size(), deleted.size(), virtualPools.size());
+    }
+
+    /**
+     * 比较影响采集和展示的配置，最后更新状态等运行信息不算配置变化
+     */
+    private static boolean sameConfig(Pool a, Pool b) {
+        return Objects.equals(a.getUpdateTime(), b.getUpdateTime())
+                && Objects.equals(a.getEnabled(), b.getEnabled())
+                && Objects.equals(a.getDataSourceClass(), b.getDataSourceClass())
+                && Objects.equals(a.getDataSourceConfig(), b.getDataSourceConfig())
+                && Objects.equals(a.getPriority(), b.getPriority())
+                && Objects.equals(a.getUpdateFrequency(), b.getUpdateFrequency());
+    }
+
+    /**
+     * 读取新增的状态记录并更新状态缓存
+     */
+    private void applyNewStatuses() {
+        int applied = 0;
+        while (true) {
+            List<PoolStatus> rows = poolStatusMapper.selectList(new LambdaQueryWrapper<PoolStatus>()
+                    .gt(PoolStatus::getId, lastStatusId)
+                    .orderByAsc(PoolStatus::getId)
+                    .last("LIMIT " + STATUS_BATCH_SIZE));
+            for (PoolStatus row : rows) {
+                // 按ID顺序读取时记录时间不一定递增，缓存只接受更新的记录
+                latestPoolStatusCache.observe(row, true);
+                poolSparklineStore.record(row.getPoolId(), row.getRecordTime(), row.getValidCount(), row.getPressure());
+                virtualPoolAggregateIndex.record(row);
+                lastStatusId = Math.max(lastStatusId, row.getId());
+            }
+            applied += rows.size();
+            if (rows.size() < STATUS_BATCH_SIZE) {
+                break;
+            }
+        }
+        virtualPoolAggregateIndex.flush();
+        log.debug("已同步其他进程写入的状态记录, 数量: {}, 位置: {}", applied, lastStatusId);
+    }
+
+    /**
+     * 读取数据库的data_version，其他连接提交修改后该值改变
+     *
+     * @return 版本，非SQLite数据库返回null
+     */
+    private Long readDataVersion() throws SQLException {
+        if (!isSqlite()) {
+            return null;
+        }
+        try (Statement statement = watchConnection().createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+
+    private Map<String, Long> readVersions() throws SQLException {
+        Map<String, Long> result = new HashMap<>();
+        String sql = "SELECT topic, version FROM change_signal";
+        if (!isSqlite()) {
+            jdbcTemplate.query(sql, rs -> {
+                result.put(rs.getString("topic"), rs.getLong("version"));
+            });
+            return result;
+        }
+        try (Statement statement = watchConnection().createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                result.put(rs.getString("topic"), rs.getLong("version"));
+            }
+        }
+        return result;
+    }
+
+    private Connection watchConnection() throws SQLException {
+        if (watchConnection == null || watchConnection.isClosed()) {
+            Properties properties = new Properties();
+            // SQLITE_OPEN_READONLY，检查连接只读
+            properties.setProperty("open_mode", "1");
+            watchConnection = DriverManager.getConnection(databaseUrl, properties);
+            lastDataVersion = null;
+        }
+        return watchConnection;
+    }
+
+    private void closeWatchConnection() {
+        if (watchConnection == null) {
+            return;
+        }
+        try {
+            watchConnection.close();
+        } catch (SQLException e) {
+            log.debug("关闭缓存一致性检查连接失败: {}", e.getMessage());
+        }
+        watchConnection = null;
+    }
+
+    private boolean isSqlite() {
+        return databaseUrl != null && databaseUrl.startsWith("jdbc:sqlite:");
+    }
+}
@@ -0,0 +1,118 @@
+package com.zjc.cache;
+
+import com.zjc.config.AppConfig;
+import com.zjc.event.PoolChangedEvent;
+import com.zjc.event.VirtualPoolChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据变更信号
+ * 写入实例在配置或状态数据变化后标记对应的主题，定时把标记过的主题在change_signal表中的版本号加一；
+ * 同一间隔内的多次变化只写一次。其他进程比较版本号即可知道哪些内存缓存需要刷新，
+ * 本进程发布的次数单独计数，缓存一致性检查据此排除自己造成的版本变化。
+ * 直接写数据库的外部程序（如导入脚本）写入后也应递增对应主题的版本号
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class ChangeSignal {
+
+    /**
+     * 号池和虚拟聚合池配置
+     */
+    public static final String CATALOG = "catalog";
+
+    /**
+     * 号池状态数据
+     */
+    public static final String STATUS = "status";
+
+    private static final String BUMP_SQL =
+            "UPDATE change_signal SET version = version + 1, update_time = ? WHERE topic = ?";
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 已变化、尚未发布的主题
+     */
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * key: 主题, value: 本进程递增版本号的次数
+     */
+    private final Map<String, AtomicLong> published = new ConcurrentHashMap<>();
+
+    /**
+     * 标记主题已变化
+     */
+    public void mark(String topic) {
+        if (!appConfig.getReplica().isEnabled()) {
+            dirty.add(topic);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPoolChanged(PoolChangedEvent event) {
+        if (!event.isExternal()) {
+            mark(CATALOG);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVirtualPoolChanged(VirtualPoolChangedEvent event) {
+        mark(CATALOG);
+    }
+
+    /**
+     * 获取本进程递增主题版本号的次数
+     */
+    public long getPublishedCount(String topic) {
+        AtomicLong count = published.get(topic);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * 发布已标记的主题
+     */
+    @Scheduled(fixedDelayString = "${app.replica.signal-millis:1000}")
+    public void publish() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        List<String> topics = new ArrayList<>(dirty);
+        topics.forEach(dirty::remove);
+        long now = System.currentTimeMillis();
+        List<Object[]> args = new ArrayList<>(topics.size());
+        for (String topic : topics) {
+            args.add(new Object[]{now, topic});
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(BUMP_SQL, args);
+            topics.forEach(topic -> published.computeIfAbsent(topic, k -> new AtomicLong()).incrementAndGet());
+        } catch (Exception e) {
+            // 下次重新发布
+            dirty.addAll(topics);
+            log.warn("发布变更信号失败, 主题: {}, 错误: {}", topics, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.zjc.cache;
+
+import com.zjc.entity.PoolStatus;
+import com.zjc.event.CatalogChangeType;
+import com.zjc.event.PoolChangedEvent;
+import com.zjc.mapper.PoolStatusMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 号池最新状态缓存
+ * 保存每个号池最近一次观测到的样本（不一定已入库）和最近一次入库的时间。
+ * 只变化写入模式下，与上一次入库的样本相同且未到心跳间隔的样本不再入库，
+ * 读取最新状态时以这里的观测值为准，数据库中的历史在两次写入之间沿用前一条的值
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Component
+public class LatestPoolStatusCache {
+
+    @Autowired
+    private PoolStatusMapper poolStatusMapper;
+
+    /**
+     * key: 号池ID, value: 最新状态
+     */
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 判断样本是否需要入库
+     *
+     * @param status 新样本，需已设置记录时间和压力值
+     * @param heartbeatMillis 心跳间隔，相同样本至少每隔这么久写入一次
+     * @return 与上一次入库的样本不同或已到心跳间隔时返回true
+     */
+    public boolean shouldPersist(PoolStatus status, long heartbeatMillis) {
+        Entry entry = entry(status.getPoolId());
+        if (entry == null || entry.persisted == null) {
+            return true;
+        }
+        return !sameValues(entry.persisted, status)
+                || status.getRecordTime() - entry.persisted.getRecordTime() >= heartbeatMillis;
+    }
+
+    /**
+     * 记录一次观测
+     * 观测值和入库值都只前进不后退，晚到的旧样本（如其他实例写入的较早记录）不覆盖更新的值
+     *
+     * @param status 样本
+     * @param persisted 是否已入库
+     */
+    public void observe(PoolStatus status, boolean persisted) {
+        entries.compute(status.getPoolId(), (poolId, current) -> {
+            PoolStatus lastPersisted = current != null ? current.persisted : null;
+            if (persisted && (lastPersisted == null || status.getRecordTime() >= lastPersisted.getRecordTime())) {
+                lastPersisted = status;
+            }
+            if (current != null && current.observed.getRecordTime() > status.getRecordTime()) {
+                return new Entry(current.observed, lastPersisted);
+            }
+            return new Entry(status, lastPersisted);
+        });
+    }
+
+    /**
+     * 获取号池最近一次观测到的样本
+     * 启动后首次访问时从数据库加载最后一条记录
+     *
+     * @return 样本，号池没有任何状态时返回null；调用方不能修改
+     */
+    public PoolStatus get(Long poolId) {
+        Entry entry = entry(poolId);
+        return entry != null ? entry.observed : null;
+    }
+
+    /**
+     * 删除号池后丢弃其状态
+     */
+    @EventListener
+    public void onPoolChanged(PoolChangedEvent event) {
+        if (event.getType() == CatalogChangeType.DELETED) {
+            event.getIds().forEach(entries::remove);
+        }
+    }
+
+    private Entry entry(Long poolId) {
+        Entry entry = entries.get(poolId);
+        if (entry != null) {
+            return entry;
+        }
+
+        PoolStatus latest = poolStatusMapper.selectLatestByPoolId(poolId);
+        if (latest == null) {
+            return null;
+        }
+        return entries.computeIfAbsent(poolId, id -> new Entry(latest, latest));
+    }
+
+    private static boolean sameValues(PoolStatus a, PoolStatus b) {
+        return Objects.equals(a.getValidCount(), b.getValidCount())
+                && Objects.equals(a.getInvalidCount(), b.getInvalidCount())
+                && Objects.equals(a.getCoolingCount(), b.getCoolingCount())
+                && Objects.equals(a.getTotalCount(), b.getTotalCount())
+                && (a.getPressure() == null ? b.getPressure() == null
+                    : b.getPressure() != null && a.getPressure().compareTo(b.getPressure()) == 0);
+    }
+
+    private static final class Entry {
+
+        private final PoolStatus observed;
+        private final PoolStatus persisted;
+
+        Entry(PoolStatus observed, PoolStatus persisted) {
+            this.observed = observed;
+            this.persisted = persisted;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.zjc.cache;
+
+import com.zjc.dto.PoolDTO;
+import com.zjc.entity.Pool;
+import com.zjc.entity.VirtualPool;
+import com.zjc.event.CatalogChangeType;
+import com.zjc.event.PoolChangedEvent;
+import com.zjc.event.VirtualPoolChangedEvent;
+import com.zjc.mapper.PoolMapper;
+import com.zjc.mapper.VirtualPoolMapper;
+import com.zjc.util.BeanUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 号池和虚拟聚合池的内存目录
+ * 配置JSON只在加载时解析一次，读操作直接访问不可变快照，不再查询配置表；
+ * 服务层增删改后发布变更事件，事务提交后只重新加载变化的记录并整体替换快照（写时复制）
+ *
+ * <p>返回的对象在多个调用方之间共享，调用方不能修改</p>
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class PoolCatalog {
+
+    /**
+     * 按创建时间倒序，与原先的查询排序一致
+     */
+    private static final Comparator<Pool> POOL_ORDER = Comparator
+            .comparing(Pool::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Pool::getId, Comparator.reverseOrder());
+
+    @Autowired
+    private PoolMapper poolMapper;
+
+    @Autowired
+    private VirtualPoolMapper virtualPoolMapper;
+
+    private volatile Catalog catalog;
+
+    /**
+     * 应用启动后重新加载，覆盖数据库初始化之前可能加载的空目录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public synchronized void warmUp() {
+        try {
+            catalog = load();
+            log.info("号池目录加载完成，号池数: {}, 虚拟池数: {}", catalog.pools.size(), catalog.virtualPools.size());
+        } catch (Exception e) {
+            log.error("号池目录加载失败", e);
+        }
+    }
+
+    /**
+     * 号池变更后重新加载变化的记录
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPoolChanged(PoolChangedEvent event) {
+        Catalog current = current();
+        Map<Long, Pool> pools = new HashMap<>(current.pools);
+        Map<Long, PoolDTO> dtos = new HashMap<>(current.poolDTOs);
+
+        if (event.getType() == CatalogChangeType.DELETED) {
+            event.getIds().forEach(pools::remove);
+            event.getIds().forEach(dtos::remove);
+        } else if (!event.getIds().isEmpty()) {
+            Map<Long, Pool> reloaded = new HashMap<>();
+            poolMapper.selectBatchIds(event.getIds()).forEach(pool -> reloaded.put(pool.getId(), pool));
+            for (Long id : event.getIds()) {
+                Pool pool = reloaded.get(id);
+                if (pool != null) {
+                    pools.put(id, pool);
+                    dtos.put(id, toDTO(pool));
+                } else {
+                    pools.remove(id);
+                    dtos.remove(id);
+                }
+            }
+        }
+
+        catalog = new Catalog(pools.values(), dtos, current.virtualPools);
+    }
+
+    /**
+     * 虚拟聚合池变更后重新加载变化的记录
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onVirtualPoolChanged(VirtualPoolChangedEvent event) {
+        Catalog current = current();
+        Map<Long, VirtualPool> virtualPools = new LinkedHashMap<>(current.virtualPools);
+
+        if (event.getType() == CatalogChangeType.DELETED) {
+            event.getIds().forEach(virtualPools::remove);
+        } else if (!event.getIds().isEmpty()) {
+            Map<Long, VirtualPool> reloaded = new HashMap<>();
+            virtualPoolMapper.selectBatchIds(event.getIds()).forEach(vp -> reloaded.put(vp.getId(), vp));
+            for (Long id : event.getIds()) {
+                VirtualPool virtualPool = reloaded.get(id);
+                if (virtualPool != null) {
+                    virtualPools.put(id, virtualPool);
+                } else {
+                    virtualPools.remove(id);
+                }
+            }
+        }
+
+        catalog = new Catalog(current.pools.values(), current.poolDTOs, virtualPools);
+    }
+
+    /**
+     * 获取号池
+     *
+     * @return 号池，不存在时返回null
+     */
+    public PoolDTO getPool(Long id) {
+        return id != null ? current().poolDTOs.get(id) : null;
+    }
+
+    /**
+     * 获取号池名称
+     *
+     * @return 号池名称，不存在时返回null
+     */
+    public String getPoolName(Long id) {
+        Pool pool = id != null ? current().pools.get(id) : null;
+        return pool != null ? pool.getName() : null;
+    }
+
+    /**
+     * 获取所有号池实体，按创建时间倒序
+     */
+    public List<Pool> getPoolEntities() {
+        return current().poolList;
+    }
+
+    /**
+     * 获取所有启用的号池，按创建时间倒序
+     */
+    public List<PoolDTO> getEnabledPools() {
+        return current().enabledPools;
+    }
+
+    /**
+     * 获取虚拟聚合池
+     *
+     * @return 虚拟聚合池，不存在时返回null
+     */
+    public VirtualPool getVirtualPool(Long id) {
+        return id != null ? current().virtualPools.get(id) : null;
+    }
+
+    /**
+     * 获取所有虚拟聚合池
+     */
+    public Collection<VirtualPool> getVirtualPools() {
+        return current().virtualPools.values();
+    }
+
+    private Catalog current() {
+        Catalog current = catalog;
+        if (current != null) {
+            return current;
+        }
+
+        // 启动阶段的定时任务可能早于ApplicationReadyEvent访问目录
+        synchronized (this) {
+            if (catalog == null) {
+                catalog = load();
+            }
+            return catalog;
+        }
+    }
+
+    private Catalog load() {
+        List<Pool> pools = poolMapper.selectList(null);
+        Map<Long, PoolDTO> dtos = new HashMap<>();
+        for (Pool pool : pools) {
+            dtos.put(pool.getId(), toDTO(pool));
+        }
+
+        Map<Long, VirtualPool> virtualPools = new LinkedHashMap<>();
+        for (VirtualPool virtualPool : virtualPoolMapper.selectList(null)) {
+            virtualPools.put(virtualPool.getId(), virtualPool);
+        }
+        return new Catalog(pools, dtos, virtualPools);
+    }
+
+    /**
+     * 将实体转换为DTO，解析后的配置包装为只读
+     */
+    private PoolDTO toDTO(Pool pool) {
+        PoolDTO dto = new PoolDTO();
+        org.springframework.beans.BeanUtils.copyProperties(pool, dto);
+        dto.setDataSourceConfig(Collections.unmodifiableMap(BeanUtils.jsonToMap(pool.getDataSourceConfig())));
+        dto.setDisplayFields(Collections.unmodifiableMap(BeanUtils.jsonToBooleanMap(pool.getDisplayFields())));
+        return dto;
+    }
+
+    /**
+     * 不可变的目录快照
+     */
+    private static final class Catalog {
+
+        private final Map<Long, Pool> pools;
+        private final List<Pool> poolList;
+        private final Map<Long, PoolDTO> poolDTOs;
+        private final List<PoolDTO> enabledPools;
+        private final Map<Long, VirtualPool> virtualPools;
+
+        Catalog(Collection<Pool> pools, Map<Long, PoolDTO> poolDTOs, Map<Long, VirtualPool> virtualPools) {
+            List<Pool> sorted = new ArrayList<>(pools);
+            sorted.sort(POOL_ORDER);
+
+            Map<Long, Pool> poolMap = new LinkedHashMap<>();
+            List<PoolDTO> enabled = new ArrayList<>();
+            for (Pool pool : sorted) {
+                poolMap.put(pool.getId(), pool);
+                if (Boolean.TRUE.equals(pool.getEnabled())) {
+                    enabled.add(poolDTOs.get(pool.getId()));
+                }
+            }
+
+            this.pools = Collections.unmodifiableMap(poolMap);
+            this.poolList = Collections.unmodifiableList(sorted);
+            this.poolDTOs = Collections.unmodifiableMap(new HashMap<>(poolDTOs));
+            this.enabledPools = Collections.unmodifiableList(enabled);
+            this.virtualPools = Collections.unmodifiableMap(new LinkedHashMap<>(virtualPools));
+        }
+    }
+}
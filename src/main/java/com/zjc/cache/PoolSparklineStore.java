@@ -0,0 +1,212 @@
+package com.zjc.cache;
+
+import com.zjc.config.AppConfig;
+import com.zjc.dto.PoolSparklineDTO;
+import com.zjc.entity.Pool;
+import com.zjc.entity.PoolStatus;
+import com.zjc.event.CatalogChangeType;
+import com.zjc.event.PoolChangedEvent;
+import com.zjc.mapper.PoolStatusMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 号池迷你趋势图内存存储
+ * 每个号池维护一个固定长度的时间桶环形缓冲，桶内保留最后一条样本，
+ * 采集入库时O(1)更新，读取时直接拼装列式结果，不访问数据库
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class PoolSparklineStore {
+
+    /**
+     * 压力值缩放倍数（保留两位小数）
+     */
+    public static final int PRESSURE_SCALE = 100;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private PoolStatusMapper poolStatusMapper;
+
+    /**
+     * 采样点数
+     */
+    private int points;
+
+    /**
+     * 桶宽度（毫秒）
+     */
+    private long step;
+
+    /**
+     * 号池环形缓冲
+     * key: 号池ID, value: 环形缓冲
+     */
+    private final Map<Long, Ring> rings = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AppConfig.Sparkline config = appConfig.getSparkline();
+        points = Math.max(2, config.getPoints());
+        step = Math.max(1000L, Math.max(1, config.getWindowHours()) * 3600000L / points);
+    }
+
+    /**
+     * 应用启动后从数据库加载窗口内的数据
+     * 数据库初始化在CommandLineRunner中完成，因此放在ApplicationReadyEvent之后
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            long startTime = (System.currentTimeMillis() / step - points + 1) * step;
+            List<PoolStatus> rows = poolStatusMapper.selectBucketLatest(startTime, step);
+            for (PoolStatus row : rows) {
+                record(row.getPoolId(), row.getRecordTime(), row.getValidCount(), row.getPressure());
+            }
+            log.info("迷你趋势图数据预热完成，号池数: {}, 样本数: {}", rings.size(), rows.size());
+        } catch (Exception e) {
+            log.error("迷你趋势图数据预热失败", e);
+        }
+    }
+
+    /**
+     * 记录一条号池状态样本
+     */
+    public void record(Long poolId, Long recordTime, Integer validCount, BigDecimal pressure) {
+        if (poolId == null || recordTime == null) {
+            return;
+        }
+
+        int scaledPressure = pressure != null
+                ? (int) Math.round(pressure.doubleValue() * PRESSURE_SCALE)
+                : 0;
+
+        rings.computeIfAbsent(poolId, k -> new Ring(points))
+                .record(recordTime / step, recordTime, validCount != null ? validCount : 0, scaledPressure);
+    }
+
+    /**
+     * 移除号池的缓冲数据
+     */
+    public void remove(Long poolId) {
+        rings.remove(poolId);
+    }
+
+    /**
+     * 删除号池后丢弃其缓冲数据
+     */
+    @EventListener
+    public void onPoolChanged(PoolChangedEvent event) {
+        if (event.getType() == CatalogChangeType.DELETED) {
+            event.getIds().forEach(this::remove);
+        }
+    }
+
+    /**
+     * 生成指定号池列表的迷你趋势图数据
+     *
+     * @param pools 号池列表（只需要ID和名称）
+     * @return 列式迷你趋势图数据
+     */
+    public PoolSparklineDTO snapshot(List<Pool> pools) {
+        long firstBucket = System.currentTimeMillis() / step - points + 1;
+
+        long[] timestamps = new long[points];
+        for (int i = 0; i < points; i++) {
+            timestamps[i] = (firstBucket + i) * step;
+        }
+
+        List<PoolSparklineDTO.Series> series = new ArrayList<>(pools.size());
+        for (Pool pool : pools) {
+            PoolSparklineDTO.Series s = new PoolSparklineDTO.Series();
+            s.setPoolId(pool.getId());
+            s.setPoolName(pool.getName());
+            s.setValidCount(new int[points]);
+            s.setPressure(new int[points]);
+
+            Ring ring = rings.get(pool.getId());
+            s.setOffset(ring != null ? ring.fill(firstBucket, s.getValidCount(), s.getPressure()) : points);
+            series.add(s);
+        }
+
+        PoolSparklineDTO dto = new PoolSparklineDTO();
+        dto.setStartTime(timestamps[0]);
+        dto.setStep(step);
+        dto.setPoints(points);
+        dto.setTimestamps(timestamps);
+        dto.setPressureScale(PRESSURE_SCALE);
+        dto.setSeries(series);
+        return dto;
+    }
+
+    /**
+     * 单个号池的时间桶环形缓冲
+     */
+    private static final class Ring {
+
+        private final long[] buckets;
+        private final long[] times;
+        private final int[] validCounts;
+        private final int[] pressures;
+
+        Ring(int points) {
+            buckets = new long[points];
+            times = new long[points];
+            validCounts = new int[points];
+            pressures = new int[points];
+            Arrays.fill(buckets, -1L);
+        }
+
+        synchronized void record(long bucket, long recordTime, int validCount, int pressure) {
+            int slot = (int) (bucket % buckets.length);
+            // 槽位中是更新的桶，或同一个桶中更晚的样本时，忽略本次写入（预热数据可能晚于实时数据到达）
+            if (buckets[slot] > bucket || (buckets[slot] == bucket && times[slot] > recordTime)) {
+                return;
+            }
+            buckets[slot] = bucket;
+            times[slot] = recordTime;
+            validCounts[slot] = validCount;
+            pressures[slot] = pressure;
+        }
+
+        /**
+         * 按时间轴填充数据，空桶沿用上一个桶的值
+         *
+         * @return 第一个有数据的桶下标，没有数据时返回数组长度
+         */
+        synchronized int fill(long firstBucket, int[] validOut, int[] pressureOut) {
+            int offset = validOut.length;
+            for (int i = 0; i < validOut.length; i++) {
+                long bucket = firstBucket + i;
+                int slot = (int) (bucket % buckets.length);
+                if (buckets[slot] == bucket) {
+                    validOut[i] = validCounts[slot];
+                    pressureOut[i] = pressures[slot];
+                    if (offset == validOut.length) {
+                        offset = i;
+                    }
+                } else if (offset < i) {
+                    validOut[i] = validOut[i - 1];
+                    pressureOut[i] = pressureOut[i - 1];
+                }
+            }
+            return offset;
+        }
+    }
+}
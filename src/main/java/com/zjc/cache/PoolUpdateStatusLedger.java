@@ -0,0 +1,198 @@
+package com.zjc.cache;
+
+import com.zjc.dto.PoolDTO;
+import com.zjc.event.CatalogChangeType;
+import com.zjc.event.PoolChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 号池最后更新状态台账
+ * 每次采集的结果（时间、成功或失败、错误信息）先记在内存中，按采集周期或定时整体刷入pool表，
+ * 一次刷新只用一个事务内的批量UPDATE，不再为每个号池单独写一次；同一号池在两次刷新之间只保留最后一次结果。
+ * 刷新不发布号池变更事件，最后更新状态不属于号池配置，不需要重新加载目录和数据源绑定；
+ * 目录中的号池因此不会随刷新更新，读取时用本实例记录过的最新结果覆盖到副本上
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class PoolUpdateStatusLedger {
+
+    public static final String SUCCESS = "success";
+
+    public static final String FAILURE = "failure";
+
+    /**
+     * 错误信息最大长度
+     */
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final String UPDATE_SQL =
+            "UPDATE pool SET last_update_time = ?, last_update_status = ?, last_error_message = ? WHERE id = ? AND deleted = 0";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 未刷新的记录
+     * key: 号池ID, value: 最后一次结果
+     */
+    private final Map<Long, Entry> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 本实例记录过的最新结果，刷新后仍保留
+     * key: 号池ID, value: 最后一次结果
+     */
+    private final Map<Long, Entry> latest = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次成功的采集
+     */
+    public void recordSuccess(Long poolId) {
+        record(poolId, SUCCESS, null);
+    }
+
+    /**
+     * 记录一次失败的采集
+     */
+    public void recordFailure(Long poolId, String errorMessage) {
+        record(poolId, FAILURE, errorMessage);
+    }
+
+    /**
+     * 记录一次采集结果
+     *
+     * @param poolId 号池ID
+     * @param status 更新状态
+     * @param errorMessage 错误信息，成功时为null
+     */
+    public void record(Long poolId, String status, String errorMessage) {
+        if (poolId == null) {
+            return;
+        }
+        if (errorMessage != null && errorMessage.length() > MAX_ERROR_LENGTH) {
+            errorMessage = errorMessage.substring(0, MAX_ERROR_LENGTH);
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), status, errorMessage);
+        pending.put(poolId, entry);
+        latest.put(poolId, entry);
+    }
+
+    /**
+     * 用本实例记录的更新结果覆盖号池的最后更新状态，读取数据库中的号池时使用
+     */
+    public void applyTo(PoolDTO dto) {
+        Entry entry = newerEntry(dto);
+        if (entry != null) {
+            dto.setLastUpdateTime(entry.time);
+            dto.setLastUpdateStatus(entry.status);
+            dto.setLastErrorMessage(entry.errorMessage);
+        }
+    }
+
+    /**
+     * 返回带最新更新状态的号池，读取目录中的共享号池时使用
+     * 有更新的结果时覆盖到副本上，不修改共享对象；没有时直接返回原对象
+     */
+    public PoolDTO overlay(PoolDTO dto) {
+        if (newerEntry(dto) == null) {
+            return dto;
+        }
+        PoolDTO copy = new PoolDTO();
+        BeanUtils.copyProperties(dto, copy);
+        applyTo(copy);
+        return copy;
+    }
+
+    /**
+     * 将未刷新的结果批量写入pool表
+     * 采集周期结束时调用，另按app.collection.status-flush-millis定时执行，覆盖单个号池的手动采集
+     *
+     * @return 写入的号池数
+     */
+    @Scheduled(fixedDelayString = "${app.collection.status-flush-millis:10000}")
+    @Transactional(rollbackFor = Exception.class)
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<Map.Entry<Long, Entry>> drained = new ArrayList<>(pending.entrySet());
+        List<Object[]> args = new ArrayList<>(drained.size());
+        for (Map.Entry<Long, Entry> item : drained) {
+            Entry entry = item.getValue();
+            args.add(new Object[]{entry.time, entry.status, entry.errorMessage, item.getKey()});
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+        } catch (Exception e) {
+            // 保留未写入的记录，下次刷新时重试
+            log.error("刷新号池最后更新状态失败, 号池数: {}", drained.size(), e);
+            return 0;
+        }
+
+        // 刷新期间又记录了新结果的号池保留到下次刷新
+        for (Map.Entry<Long, Entry> item : drained) {
+            pending.remove(item.getKey(), item.getValue());
+        }
+        log.debug("刷新号池最后更新状态完成, 号池数: {}", drained.size());
+        return drained.size();
+    }
+
+    /**
+     * 删除号池后丢弃其未刷新的结果
+     */
+    @EventListener
+    public void onPoolChanged(PoolChangedEvent event) {
+        if (event.getType() == CatalogChangeType.DELETED) {
+            event.getIds().forEach(id -> {
+                pending.remove(id);
+                latest.remove(id);
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 比号池当前记录更新的结果，没有时返回null
+     */
+    private Entry newerEntry(PoolDTO dto) {
+        Entry entry = dto != null ? latest.get(dto.getId()) : null;
+        if (entry == null || (dto.getLastUpdateTime() != null && dto.getLastUpdateTime() >= entry.time)) {
+            return null;
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private final long time;
+        private final String status;
+        private final String errorMessage;
+
+        Entry(long time, String status, String errorMessage) {
+            this.time = time;
+            this.status = status;
+            this.errorMessage = errorMessage;
+        }
+    }
+}
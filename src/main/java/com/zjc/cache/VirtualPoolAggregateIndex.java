@@ -0,0 +1,448 @@
+package com.zjc.cache;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.AggregationStrategyRegistry;
+import com.zjc.aggregate.StatusAggregator;
+import com.zjc.aggregate.WeightVector;
+import com.zjc.entity.PoolStatus;
+import com.zjc.entity.VirtualPool;
+import com.zjc.formula.FormulaContext;
+import com.zjc.formula.FormulaMetric;
+import com.zjc.formula.MetricFormulaSet;
+import com.zjc.mapper.PoolStatusMapper;
+import com.zjc.mapper.VirtualPoolMapper;
+import com.zjc.util.BeanUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 虚拟聚合池聚合值索引
+ * 每个虚拟池保存成员号池（及下级虚拟池）的最新值和累加器，号池写入新样本时O(1)更新直接所属的虚拟池；
+ * 被上级聚合的虚拟池只记入待传播集合，由flush按层级拓扑序批量向上传播，
+ * 一个采集周期内的多次变化只沿受影响的路径计算一次
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class VirtualPoolAggregateIndex {
+
+    @Autowired
+    private VirtualPoolMapper virtualPoolMapper;
+
+    @Autowired
+    private PoolStatusMapper poolStatusMapper;
+
+    @Autowired
+    private VirtualPoolMembershipIndex virtualPoolMembershipIndex;
+
+    @Autowired
+    private VirtualPoolHierarchy virtualPoolHierarchy;
+
+    @Autowired
+    private AggregationStrategyRegistry aggregationStrategyRegistry;
+
+    /**
+     * key: 虚拟池ID, value: 聚合值
+     */
+    private final Map<Long, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    /**
+     * 聚合值已变化、尚未传播给上级的虚拟池
+     */
+    private final Set<Long> pendingPropagation = ConcurrentHashMap.newKeySet();
+
+    private final Object propagationLock = new Object();
+
+    /**
+     * 应用启动后按层级从下到上加载所有虚拟池，下级的聚合值可以直接作为上级的成员值
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void warmUp() {
+        try {
+            List<VirtualPool> virtualPools = virtualPoolMapper.selectList(null);
+            virtualPools.sort(Comparator.comparingInt(vp -> virtualPoolHierarchy.getRank(vp.getId())));
+            for (VirtualPool virtualPool : virtualPools) {
+                refresh(virtualPool);
+            }
+            flush();
+            log.info("虚拟聚合池聚合索引加载完成，虚拟池数: {}", aggregates.size());
+        } catch (Exception e) {
+            log.error("虚拟聚合池聚合索引加载失败", e);
+        }
+    }
+
+    /**
+     * 号池写入新样本后更新直接所属虚拟池的聚合值，上级虚拟池等待flush时统一传播
+     */
+    public void record(PoolStatus status) {
+        if (status == null || status.getPoolId() == null || status.getRecordTime() == null) {
+            return;
+        }
+
+        virtualPoolMembershipIndex.forEachVirtualPoolContaining(status.getPoolId(), virtualPoolId -> {
+            Aggregate aggregate = aggregates.get(virtualPoolId);
+            if (aggregate != null && aggregate.update(status)) {
+                markChanged(virtualPoolId);
+            }
+        });
+    }
+
+    /**
+     * 将待传播的变化按层级拓扑序向上传播
+     * 每个虚拟池在一次flush中最多计算一次，开销只与变化路径上的虚拟池数量有关
+     */
+    public void flush() {
+        if (pendingPropagation.isEmpty()) {
+            return;
+        }
+
+        synchronized (propagationLock) {
+            PriorityQueue<Long> queue = new PriorityQueue<>(
+                    Comparator.comparingInt((Long id) -> virtualPoolHierarchy.getRank(id)));
+            Set<Long> queued = new HashSet<>();
+            for (Iterator<Long> it = pendingPropagation.iterator(); it.hasNext(); ) {
+                Long id = it.next();
+                it.remove();
+                if (queued.add(id)) {
+                    queue.add(id);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                Long id = queue.poll();
+                Aggregate aggregate = aggregates.get(id);
+                Snapshot snapshot = aggregate != null ? aggregate.snapshot() : null;
+
+                for (Long parentId : virtualPoolHierarchy.getParents(id)) {
+                    Aggregate parent = aggregates.get(parentId);
+                    if (parent == null) {
+                        continue;
+                    }
+                    parent.updateChild(id, snapshot);
+                    if (virtualPoolHierarchy.hasParents(parentId) && queued.add(parentId)) {
+                        queue.add(parentId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 虚拟池新建或修改后重建其聚合值
+     * 先安装空的聚合值再从数据库加载成员最新样本，加载期间到达的实时样本不会被旧数据覆盖；
+     * 下级虚拟池需要先完成刷新（层级关系先于聚合值更新）
+     */
+    public synchronized void refresh(VirtualPool virtualPool) {
+        if (virtualPool == null || virtualPool.getId() == null) {
+            return;
+        }
+
+        Long virtualPoolId = virtualPool.getId();
+        List<Long> poolIds = BeanUtils.jsonToLongList(virtualPool.getPoolIds());
+        List<Long> childIds = virtualPoolHierarchy.getChildren(virtualPoolId);
+
+        Aggregate aggregate = new Aggregate(poolIds, childIds, aggregationStrategyRegistry.get(virtualPool.getAggregateStrategy()),
+                BeanUtils.jsonToMap(virtualPool.getWeightConfig()));
+        try {
+            aggregate.formulas = MetricFormulaSet.compile(BeanUtils.jsonToMap(virtualPool.getMetricFormulas()),
+                    aggregate.slots, aggregate.present.length);
+        } catch (IllegalArgumentException e) {
+            log.warn("虚拟聚合池自定义指标编译失败, id: {}, 错误: {}", virtualPoolId, e.getMessage());
+        }
+        aggregates.put(virtualPoolId, aggregate);
+
+        if (!poolIds.isEmpty()) {
+            for (PoolStatus status : poolStatusMapper.selectLatestByPoolIds(poolIds)) {
+                aggregate.update(status);
+            }
+        }
+        for (Long childId : childIds) {
+            aggregate.updateChild(childId, get(childId));
+        }
+
+        markChanged(virtualPoolId);
+    }
+
+    /**
+     * 虚拟池删除后移除其聚合值，并清除上级中对应的成员值
+     * 需要在层级关系移除之前调用
+     */
+    public synchronized void remove(Long virtualPoolId) {
+        aggregates.remove(virtualPoolId);
+        for (Long parentId : virtualPoolHierarchy.getParents(virtualPoolId)) {
+            Aggregate parent = aggregates.get(parentId);
+            if (parent != null) {
+                parent.updateChild(virtualPoolId, null);
+                markChanged(parentId);
+            }
+        }
+    }
+
+    /**
+     * 获取虚拟池的聚合值，读取前先传播尚未处理的变化
+     *
+     * @return 聚合值快照，虚拟池不存在或成员都没有数据时返回null
+     */
+    public Snapshot get(Long virtualPoolId) {
+        flush();
+        Aggregate aggregate = aggregates.get(virtualPoolId);
+        return aggregate != null ? aggregate.snapshot() : null;
+    }
+
+    private void markChanged(Long virtualPoolId) {
+        if (virtualPoolHierarchy.hasParents(virtualPoolId)) {
+            pendingPropagation.add(virtualPoolId);
+        }
+    }
+
+    /**
+     * 虚拟池聚合值快照
+     */
+    public static final class Snapshot {
+
+        private final int validCount;
+        private final int invalidCount;
+        private final int coolingCount;
+        private final int totalCount;
+        private final int poolCount;
+        private final Map<String, Double> metrics;
+
+        Snapshot(int validCount, int invalidCount, int coolingCount, int totalCount, int poolCount, Map<String, Double> metrics) {
+            this.validCount = validCount;
+            this.invalidCount = invalidCount;
+            this.coolingCount = coolingCount;
+            this.totalCount = totalCount;
+            this.poolCount = poolCount;
+            this.metrics = metrics;
+        }
+
+        public int getValidCount() {
+            return validCount;
+        }
+
+        public int getInvalidCount() {
+            return invalidCount;
+        }
+
+        public int getCoolingCount() {
+            return coolingCount;
+        }
+
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * 有数据的成员号池数量
+         */
+        public int getPoolCount() {
+            return poolCount;
+        }
+
+        /**
+         * 自定义指标的计算结果，没有配置公式时为空
+         */
+        public Map<String, Double> getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * 聚合压力值，计算方式与实时聚合保持一致
+         */
+        public BigDecimal getPressure() {
+            return StatusAggregator.calculatePressure(validCount, totalCount);
+        }
+    }
+
+    /**
+     * 单个虚拟池的聚合状态
+     * 成员号池和下级虚拟池按槽位保存（号池在前）；策略可逆时新值替换旧值只需移除旧值再加入新值，
+     * 不可逆时标记为脏，读取时对成员数组做一次遍历重新计算；自定义指标公式随聚合状态一起编译缓存
+     */
+    private static final class Aggregate implements FormulaContext {
+
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private final Map<Long, Integer> childSlots = new HashMap<>();
+        private final WeightVector weights;
+        private final StatusAggregator aggregator;
+        private final boolean invertible;
+        private boolean dirty;
+        private MetricFormulaSet formulas = MetricFormulaSet.EMPTY;
+
+        private final boolean[] present;
+        private final long[] recordTimes;
+        private final int[] validCounts;
+        private final int[] invalidCounts;
+        private final int[] coolingCounts;
+        private final int[] totalCounts;
+
+        Aggregate(List<Long> poolIds, List<Long> childIds, AggregationStrategy strategy, Map<String, Object> weightConfig) {
+            List<String> memberKeys = new ArrayList<>();
+            for (Long poolId : poolIds) {
+                if (slots.putIfAbsent(poolId, memberKeys.size()) == null) {
+                    memberKeys.add(String.valueOf(poolId));
+                }
+            }
+            for (Long childId : childIds) {
+                if (childSlots.putIfAbsent(childId, memberKeys.size()) == null) {
+                    memberKeys.add(WeightVector.virtualPoolKey(childId));
+                }
+            }
+            this.weights = strategy.usesWeights() ? WeightVector.ofKeys(memberKeys, weightConfig) : null;
+            this.aggregator = new StatusAggregator(strategy);
+            this.invertible = aggregator.isInvertible();
+
+            int size = memberKeys.size();
+            present = new boolean[size];
+            recordTimes = new long[size];
+            validCounts = new int[size];
+            invalidCounts = new int[size];
+            coolingCounts = new int[size];
+            totalCounts = new int[size];
+            Arrays.fill(recordTimes, Long.MIN_VALUE);
+        }
+
+        /**
+         * 更新成员号池的值
+         *
+         * @return 是否发生了更新
+         */
+        synchronized boolean update(PoolStatus status) {
+            Integer slot = slots.get(status.getPoolId());
+            if (slot == null || recordTimes[slot] > status.getRecordTime()) {
+                return false;
+            }
+
+            recordTimes[slot] = status.getRecordTime();
+            set(slot,
+                    status.getValidCount() != null ? status.getValidCount() : 0,
+                    status.getInvalidCount() != null ? status.getInvalidCount() : 0,
+                    status.getCoolingCount() != null ? status.getCoolingCount() : 0,
+                    status.getTotalCount() != null ? status.getTotalCount() : 0);
+            return true;
+        }
+
+        /**
+         * 更新下级虚拟池的值，snapshot为null时清除该成员
+         */
+        synchronized void updateChild(Long childId, Snapshot snapshot) {
+            Integer slot = childSlots.get(childId);
+            if (slot == null) {
+                return;
+            }
+
+            if (snapshot == null) {
+                if (present[slot]) {
+                    if (invertible) {
+                        aggregator.remove(validCounts[slot], invalidCounts[slot], coolingCounts[slot], totalCounts[slot], weightOf(slot));
+                    } else {
+                        dirty = true;
+                    }
+                    present[slot] = false;
+                }
+                return;
+            }
+
+            set(slot, snapshot.getValidCount(), snapshot.getInvalidCount(), snapshot.getCoolingCount(), snapshot.getTotalCount());
+        }
+
+        private void set(int slot, int validCount, int invalidCount, int coolingCount, int totalCount) {
+            double weight = weightOf(slot);
+            if (invertible && present[slot]) {
+                aggregator.remove(validCounts[slot], invalidCounts[slot], coolingCounts[slot], totalCounts[slot], weight);
+            }
+
+            present[slot] = true;
+            validCounts[slot] = validCount;
+            invalidCounts[slot] = invalidCount;
+            coolingCounts[slot] = coolingCount;
+            totalCounts[slot] = totalCount;
+
+            if (invertible) {
+                aggregator.add(validCount, invalidCount, coolingCount, totalCount, weight);
+            } else {
+                dirty = true;
+            }
+        }
+
+        synchronized Snapshot snapshot() {
+            if (dirty) {
+                aggregator.reset();
+                for (int i = 0; i < present.length; i++) {
+                    if (present[i]) {
+                        aggregator.add(validCounts[i], invalidCounts[i], coolingCounts[i], totalCounts[i], weightOf(i));
+                    }
+                }
+                dirty = false;
+            }
+
+            if (aggregator.getPoolCount() == 0) {
+                return null;
+            }
+            return new Snapshot(aggregator.getValidCount(), aggregator.getInvalidCount(), aggregator.getCoolingCount(),
+                    aggregator.getTotalCount(), aggregator.getPoolCount(), formulas.evaluate(this));
+        }
+
+        @Override
+        public double aggregate(FormulaMetric metric) {
+            switch (metric) {
+                case VALID:
+                    return aggregator.getValidCount();
+                case INVALID:
+                    return aggregator.getInvalidCount();
+                case COOLING:
+                    return aggregator.getCoolingCount();
+                case TOTAL:
+                    return aggregator.getTotalCount();
+                case PRESSURE:
+                    BigDecimal pressure = aggregator.getPressure();
+                    return pressure != null ? pressure.doubleValue() : Double.NaN;
+                default:
+                    return aggregator.getPoolCount();
+            }
+        }
+
+        @Override
+        public boolean hasMember(int slot) {
+            return present[slot];
+        }
+
+        @Override
+        public double member(int slot, FormulaMetric metric) {
+            switch (metric) {
+                case VALID:
+                    return validCounts[slot];
+                case INVALID:
+                    return invalidCounts[slot];
+                case COOLING:
+                    return coolingCounts[slot];
+                default:
+                    return totalCounts[slot];
+            }
+        }
+
+        private double weightOf(int slot) {
+            return weights != null ? weights.get(slot) : WeightVector.DEFAULT_WEIGHT;
+        }
+    }
+}
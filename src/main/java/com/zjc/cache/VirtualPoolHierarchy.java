@@ -0,0 +1,213 @@
+package com.zjc.cache;
+
+import com.zjc.entity.VirtualPool;
+import com.zjc.mapper.VirtualPoolMapper;
+import com.zjc.util.BeanUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 虚拟聚合池层级关系
+ * 虚拟池可以聚合下级虚拟池，层级关系构成有向无环图。
+ * 每个虚拟池的层级号为其下级虚拟池层级号的最大值加1（只聚合号池的虚拟池为0），
+ * 按层级号从小到大处理即为拓扑序，下级的变化总是先于上级计算
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class VirtualPoolHierarchy {
+
+    @Autowired
+    private VirtualPoolMapper virtualPoolMapper;
+
+    /**
+     * 各虚拟池配置的下级虚拟池，只在写锁内修改
+     */
+    private final Map<Long, List<Long>> configuredChildren = new HashMap<>();
+
+    /**
+     * 当前生效的层级图，变更时整体替换
+     */
+    private volatile Graph graph = new Graph(new HashMap<>());
+
+    /**
+     * 应用启动后加载层级关系，需要先于聚合索引完成
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public synchronized void warmUp() {
+        try {
+            configuredChildren.clear();
+            for (VirtualPool virtualPool : virtualPoolMapper.selectList(null)) {
+                configuredChildren.put(virtualPool.getId(), BeanUtils.jsonToLongList(virtualPool.getVirtualPoolIds()));
+            }
+            graph = new Graph(configuredChildren);
+            log.info("虚拟聚合池层级关系加载完成，虚拟池数: {}, 最大层级: {}", configuredChildren.size(), graph.maxRank);
+        } catch (Exception e) {
+            log.error("虚拟聚合池层级关系加载失败", e);
+        }
+    }
+
+    /**
+     * 虚拟池新建或修改后更新层级关系
+     */
+    public synchronized void refresh(VirtualPool virtualPool) {
+        if (virtualPool == null || virtualPool.getId() == null) {
+            return;
+        }
+        configuredChildren.put(virtualPool.getId(), BeanUtils.jsonToLongList(virtualPool.getVirtualPoolIds()));
+        graph = new Graph(configuredChildren);
+    }
+
+    /**
+     * 虚拟池删除后移除层级关系
+     */
+    public synchronized void remove(Long virtualPoolId) {
+        if (configuredChildren.remove(virtualPoolId) != null) {
+            graph = new Graph(configuredChildren);
+        }
+    }
+
+    /**
+     * 获取直接上级虚拟池
+     */
+    public List<Long> getParents(Long virtualPoolId) {
+        return graph.parents.getOrDefault(virtualPoolId, Collections.emptyList());
+    }
+
+    /**
+     * 获取直接下级虚拟池（只包含存在的虚拟池）
+     */
+    public List<Long> getChildren(Long virtualPoolId) {
+        return graph.children.getOrDefault(virtualPoolId, Collections.emptyList());
+    }
+
+    /**
+     * 是否被其他虚拟池聚合
+     */
+    public boolean hasParents(Long virtualPoolId) {
+        return graph.parents.containsKey(virtualPoolId);
+    }
+
+    /**
+     * 获取层级号，不存在的虚拟池返回0
+     */
+    public int getRank(Long virtualPoolId) {
+        return graph.ranks.getOrDefault(virtualPoolId, 0);
+    }
+
+    /**
+     * 判断把虚拟池的下级设置为指定列表后是否会形成环
+     *
+     * @param virtualPoolId 虚拟池ID，新建时为null
+     * @param childIds 新的下级虚拟池ID列表
+     * @return 会形成环时返回环上的一个下级虚拟池ID，否则返回null
+     */
+    public Long findCycle(Long virtualPoolId, List<Long> childIds) {
+        if (virtualPoolId == null || childIds == null) {
+            return null;
+        }
+
+        Graph current = graph;
+        for (Long childId : childIds) {
+            // 从新的下级出发沿现有的下级关系查找，能回到自身即形成环
+            Deque<Long> stack = new ArrayDeque<>();
+            Set<Long> visited = new HashSet<>();
+            stack.push(childId);
+            while (!stack.isEmpty()) {
+                Long id = stack.pop();
+                if (id.equals(virtualPoolId)) {
+                    return childId;
+                }
+                if (visited.add(id)) {
+                    current.children.getOrDefault(id, Collections.emptyList()).forEach(stack::push);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 不可变的层级图
+     */
+    private static final class Graph {
+
+        private final Map<Long, List<Long>> children = new HashMap<>();
+        private final Map<Long, List<Long>> parents = new HashMap<>();
+        private final Map<Long, Integer> ranks = new HashMap<>();
+        private int maxRank;
+
+        Graph(Map<Long, List<Long>> configuredChildren) {
+            for (Map.Entry<Long, List<Long>> entry : configuredChildren.entrySet()) {
+                List<Long> existing = new ArrayList<>();
+                for (Long childId : entry.getValue()) {
+                    // 忽略已删除的下级和重复项
+                    if (configuredChildren.containsKey(childId) && !existing.contains(childId)) {
+                        existing.add(childId);
+                    }
+                }
+                if (!existing.isEmpty()) {
+                    children.put(entry.getKey(), existing);
+                }
+            }
+
+            for (Long id : configuredChildren.keySet()) {
+                rank(id, new HashSet<>());
+            }
+
+            for (Map.Entry<Long, List<Long>> entry : children.entrySet()) {
+                for (Long childId : entry.getValue()) {
+                    parents.computeIfAbsent(childId, k -> new ArrayList<>()).add(entry.getKey());
+                }
+            }
+        }
+
+        /**
+         * 计算层级号，遇到环（只可能来自校验之前的历史数据）时断开该边
+         */
+        private int rank(Long id, Set<Long> visiting) {
+            Integer cached = ranks.get(id);
+            if (cached != null) {
+                return cached;
+            }
+
+            visiting.add(id);
+            int rank = 0;
+            List<Long> childIds = children.get(id);
+            if (childIds != null) {
+                for (Long childId : new ArrayList<>(childIds)) {
+                    if (visiting.contains(childId)) {
+                        log.warn("虚拟聚合池层级存在环，忽略关系: {} -> {}", id, childId);
+                        childIds.remove(childId);
+                        continue;
+                    }
+                    rank = Math.max(rank, rank(childId, visiting) + 1);
+                }
+                if (childIds.isEmpty()) {
+                    children.remove(id);
+                }
+            }
+            visiting.remove(id);
+
+            ranks.put(id, rank);
+            maxRank = Math.max(maxRank, rank);
+            return rank;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.zjc.cache;
+
+import com.zjc.entity.VirtualPool;
+import com.zjc.mapper.VirtualPoolMapper;
+import com.zjc.util.BeanUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * 虚拟聚合池成员关系索引
+ * 号池ID和虚拟池ID分别映射为连续的整数槽位，成员关系用压缩位图保存：
+ * 每个虚拟池一个成员号池位图，每个号池一个所属虚拟池位图。
+ * 位图发布后不再修改，变更时复制后整体替换，读取无需加锁
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class VirtualPoolMembershipIndex {
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    @Autowired
+    private VirtualPoolMapper virtualPoolMapper;
+
+    /**
+     * 号池ID到槽位的映射，槽位只增不减
+     */
+    private final Map<Long, Integer> poolSlots = new ConcurrentHashMap<>();
+    private volatile long[] poolIdsBySlot = new long[16];
+
+    /**
+     * 虚拟池ID到槽位的映射，槽位只增不减
+     */
+    private final Map<Long, Integer> virtualPoolSlots = new ConcurrentHashMap<>();
+    private volatile long[] virtualPoolIdsBySlot = new long[16];
+
+    /**
+     * key: 虚拟池ID, value: 成员号池槽位位图
+     */
+    private final Map<Long, RoaringBitmap> members = new ConcurrentHashMap<>();
+
+    /**
+     * key: 号池ID, value: 所属虚拟池槽位位图
+     */
+    private final Map<Long, RoaringBitmap> containing = new ConcurrentHashMap<>();
+
+    /**
+     * 已启用的虚拟池槽位位图
+     */
+    private volatile RoaringBitmap enabled = new RoaringBitmap();
+
+    /**
+     * 应用启动后加载所有虚拟池的成员关系
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<VirtualPool> virtualPools = virtualPoolMapper.selectList(null);
+            for (VirtualPool virtualPool : virtualPools) {
+                refresh(virtualPool);
+            }
+            log.info("虚拟聚合池成员索引加载完成，虚拟池数: {}, 号池数: {}", members.size(), containing.size());
+        } catch (Exception e) {
+            log.error("虚拟聚合池成员索引加载失败", e);
+        }
+    }
+
+    /**
+     * 虚拟池新建、修改或切换启用状态后更新成员关系
+     */
+    public synchronized void refresh(VirtualPool virtualPool) {
+        if (virtualPool == null || virtualPool.getId() == null) {
+            return;
+        }
+
+        Long virtualPoolId = virtualPool.getId();
+        int virtualPoolSlot = virtualPoolSlot(virtualPoolId);
+
+        RoaringBitmap updated = new RoaringBitmap();
+        for (Long poolId : BeanUtils.jsonToLongList(virtualPool.getPoolIds())) {
+            updated.add(poolSlot(poolId));
+        }
+        updated.runOptimize();
+
+        RoaringBitmap previous = members.getOrDefault(virtualPoolId, EMPTY);
+        RoaringBitmap removed = RoaringBitmap.andNot(previous, updated);
+        RoaringBitmap added = RoaringBitmap.andNot(updated, previous);
+
+        long[] poolIds = poolIdsBySlot;
+        removed.forEach((int slot) -> unlink(poolIds[slot], virtualPoolSlot));
+        added.forEach((int slot) -> link(poolIds[slot], virtualPoolSlot));
+        members.put(virtualPoolId, updated);
+
+        RoaringBitmap enabledCopy = enabled.clone();
+        if (Boolean.FALSE.equals(virtualPool.getEnabled())) {
+            enabledCopy.remove(virtualPoolSlot);
+        } else {
+            enabledCopy.add(virtualPoolSlot);
+        }
+        enabled = enabledCopy;
+    }
+
+    /**
+     * 虚拟池删除后移除成员关系
+     */
+    public synchronized void remove(Long virtualPoolId) {
+        RoaringBitmap previous = members.remove(virtualPoolId);
+        Integer virtualPoolSlot = virtualPoolSlots.get(virtualPoolId);
+        if (previous == null || virtualPoolSlot == null) {
+            return;
+        }
+
+        long[] poolIds = poolIdsBySlot;
+        previous.forEach((int slot) -> unlink(poolIds[slot], virtualPoolSlot));
+
+        RoaringBitmap enabledCopy = enabled.clone();
+        enabledCopy.remove(virtualPoolSlot);
+        enabled = enabledCopy;
+    }
+
+    /**
+     * 判断虚拟池是否包含指定号池
+     */
+    public boolean contains(Long virtualPoolId, Long poolId) {
+        RoaringBitmap bitmap = members.get(virtualPoolId);
+        Integer slot = poolSlots.get(poolId);
+        return bitmap != null && slot != null && bitmap.contains(slot);
+    }
+
+    /**
+     * 获取包含指定号池的虚拟池ID
+     *
+     * @param poolId 号池ID
+     * @param enabledOnly 是否只返回启用的虚拟池
+     * @return 虚拟池ID列表
+     */
+    public List<Long> getVirtualPoolIdsContaining(Long poolId, boolean enabledOnly) {
+        RoaringBitmap bitmap = containing.getOrDefault(poolId, EMPTY);
+        if (enabledOnly) {
+            bitmap = RoaringBitmap.and(bitmap, enabled);
+        }
+        return toIds(bitmap, virtualPoolIdsBySlot);
+    }
+
+    /**
+     * 遍历包含指定号池的所有虚拟池ID，不分配中间集合
+     */
+    public void forEachVirtualPoolContaining(Long poolId, LongConsumer consumer) {
+        RoaringBitmap bitmap = containing.get(poolId);
+        if (bitmap == null) {
+            return;
+        }
+        long[] virtualPoolIds = virtualPoolIdsBySlot;
+        bitmap.forEach((int slot) -> consumer.accept(virtualPoolIds[slot]));
+    }
+
+    /**
+     * 获取多个虚拟池共同包含的号池ID
+     */
+    public List<Long> intersectMembers(Collection<Long> virtualPoolIds) {
+        RoaringBitmap result = null;
+        for (Long virtualPoolId : virtualPoolIds) {
+            RoaringBitmap bitmap = members.getOrDefault(virtualPoolId, EMPTY);
+            result = result == null ? bitmap.clone() : RoaringBitmap.and(result, bitmap);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? toIds(result, poolIdsBySlot) : new ArrayList<>();
+    }
+
+    /**
+     * 获取多个虚拟池包含的所有号池ID（去重）
+     */
+    public List<Long> unionMembers(Collection<Long> virtualPoolIds) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (Long virtualPoolId : virtualPoolIds) {
+            result.or(members.getOrDefault(virtualPoolId, EMPTY));
+        }
+        return toIds(result, poolIdsBySlot);
+    }
+
+    private void link(long poolId, int virtualPoolSlot) {
+        containing.compute(poolId, (k, bitmap) -> {
+            RoaringBitmap updated = bitmap != null ? bitmap.clone() : new RoaringBitmap();
+            updated.add(virtualPoolSlot);
+            return updated;
+        });
+    }
+
+    private void unlink(long poolId, int virtualPoolSlot) {
+        containing.computeIfPresent(poolId, (k, bitmap) -> {
+            RoaringBitmap updated = bitmap.clone();
+            updated.remove(virtualPoolSlot);
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    private int poolSlot(Long poolId) {
+        Integer slot = poolSlots.get(poolId);
+        if (slot != null) {
+            return slot;
+        }
+        slot = poolSlots.size();
+        poolIdsBySlot = put(poolIdsBySlot, slot, poolId);
+        poolSlots.put(poolId, slot);
+        return slot;
+    }
+
+    private int virtualPoolSlot(Long virtualPoolId) {
+        Integer slot = virtualPoolSlots.get(virtualPoolId);
+        if (slot != null) {
+            return slot;
+        }
+        slot = virtualPoolSlots.size();
+        virtualPoolIdsBySlot = put(virtualPoolIdsBySlot, slot, virtualPoolId);
+        virtualPoolSlots.put(virtualPoolId, slot);
+        return slot;
+    }
+
+    /**
+     * 槽位数组写入，容量不足时扩容后替换
+     * 新槽位先写入数组再发布到位图，读取方拿到的数组一定包含位图中的槽位
+     */
+    private static long[] put(long[] array, int slot, long id) {
+        long[] target = slot < array.length ? array : Arrays.copyOf(array, array.length * 2);
+        target[slot] = id;
+        return target;
+    }
+
+    private static List<Long> toIds(RoaringBitmap bitmap, long[] idsBySlot) {
+        List<Long> ids = new ArrayList<>(bitmap.getCardinality());
+        bitmap.forEach((int slot) -> ids.add(idsBySlot[slot]));
+        return ids;
+    }
+}
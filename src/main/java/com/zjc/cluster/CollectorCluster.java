@@ -0,0 +1,283 @@
+package com.zjc.cluster;
+
+import com.zjc.config.AppConfig;
+import com.zjc.dto.PoolDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * 多实例分片采集协调
+ * 号池按ID哈希到固定数量的分片，分片再按一致性哈希分配给存活的采集实例。
+ * 实例定时在collector_instance表中心跳，并在collector_lease表中为分配给自己的分片续租；
+ * 分片只有在租约空闲、已过期或本来就属于自己时才能被认领，不再分配给自己的分片立即释放。
+ * 实例加入时其他实例在下一次心跳让出对应分片；实例下线后租约到期，分片由新的归属实例接管。
+ * 本地只在租约有效期内认为自己持有分片，数据库不可用时不会继续采集已可能被接管的号池
+ *
+ * <p>关闭集群模式时本实例采集所有号池</p>
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class CollectorCluster {
+
+    private static final String UPSERT_INSTANCE_SQL =
+            "INSERT INTO collector_instance (instance_id, heartbeat_time, start_time) VALUES (?, ?, ?) " +
+            "ON CONFLICT(instance_id) DO UPDATE SET heartbeat_time = excluded.heartbeat_time";
+
+    private static final String INSERT_SHARD_SQL =
+            "INSERT INTO collector_lease (shard_id, owner_id, lease_until) VALUES (?, NULL, 0) " +
+            "ON CONFLICT(shard_id) DO NOTHING";
+
+    private static final String CLAIM_SQL =
+            "UPDATE collector_lease SET owner_id = ?, lease_until = ? " +
+            "WHERE shard_id = ? AND (owner_id = ? OR owner_id IS NULL OR lease_until < ?)";
+
+    private static final String RELEASE_SQL =
+            "UPDATE collector_lease SET owner_id = NULL, lease_until = 0 WHERE shard_id = ? AND owner_id = ?";
+
+    /**
+     * 下线超过租约时长该倍数的实例记录被清理
+     */
+    private static final int INSTANCE_EXPIRE_FACTOR = 10;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile String instanceId;
+
+    private volatile boolean ready;
+
+    private volatile Ownership ownership = Ownership.NONE;
+
+    private int initializedShards;
+
+    private long heartbeatFailures;
+
+    /**
+     * 数据库初始化完成后加入集群
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        if (!isEnabled()) {
+            return;
+        }
+        ready = true;
+        log.info("采集实例加入集群, instanceId: {}, 分片数: {}", getInstanceId(), shardCount());
+        heartbeat();
+    }
+
+    /**
+     * 心跳并续租分片
+     */
+    @Scheduled(fixedDelayString = "${app.cluster.heartbeat-millis:5000}")
+    public void heartbeat() {
+        if (!isEnabled() || !ready) {
+            return;
+        }
+
+        try {
+            renew();
+        } catch (Exception e) {
+            synchronized (this) {
+                heartbeatFailures++;
+            }
+            log.warn("采集实例心跳失败, instanceId: {}, 错误: {}", getInstanceId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 判断号池是否由本实例采集
+     */
+    public boolean isOwned(Long poolId) {
+        if (!isEnabled()) {
+            return true;
+        }
+        Ownership current = ownership;
+        return System.currentTimeMillis() < current.validUntil && current.shards.contains(shardOf(poolId));
+    }
+
+    /**
+     * 过滤出由本实例采集的号池
+     */
+    public List<PoolDTO> filterOwned(List<PoolDTO> pools) {
+        if (!isEnabled()) {
+            return pools;
+        }
+        return pools.stream()
+                .filter(pool -> isOwned(pool.getId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取集群状态
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Ownership current = ownership;
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", isEnabled());
+        statistics.put("instanceId", getInstanceId());
+        statistics.put("shardCount", shardCount());
+        statistics.put("liveInstances", current.liveInstances);
+        statistics.put("ownedShards", current.shards);
+        statistics.put("assignedShards", current.assigned);
+        statistics.put("leaseValidUntil", current.validUntil);
+        statistics.put("heartbeatFailures", heartbeatFailures);
+        return statistics;
+    }
+
+    /**
+     * 退出时释放租约，其他实例在下一次心跳即可接管，不必等租约到期
+     */
+    @PreDestroy
+    public synchronized void leave() {
+        if (!isEnabled() || !ready) {
+            return;
+        }
+        ready = false;
+        ownership = Ownership.NONE;
+        try {
+            jdbcTemplate.update("UPDATE collector_lease SET owner_id = NULL, lease_until = 0 WHERE owner_id = ?", getInstanceId());
+            jdbcTemplate.update("DELETE FROM collector_instance WHERE instance_id = ?", getInstanceId());
+            log.info("采集实例退出集群, instanceId: {}", getInstanceId());
+        } catch (Exception e) {
+            log.warn("采集实例释放租约失败, instanceId: {}, 错误: {}", getInstanceId(), e.getMessage());
+        }
+    }
+
+    private synchronized void renew() {
+        AppConfig.Cluster config = appConfig.getCluster();
+        String self = getInstanceId();
+        long now = System.currentTimeMillis();
+        long leaseMillis = Math.max(config.getLeaseMillis(), config.getHeartbeatMillis() * 2);
+        int shardCount = shardCount();
+
+        jdbcTemplate.update(UPSERT_INSTANCE_SQL, self, now, startTime);
+        List<String> live = jdbcTemplate.queryForList(
+                "SELECT instance_id FROM collector_instance WHERE heartbeat_time >= ? ORDER BY instance_id",
+                String.class, now - leaseMillis);
+        if (!live.contains(self)) {
+            live.add(self);
+        }
+        jdbcTemplate.update("DELETE FROM collector_instance WHERE heartbeat_time < ?", now - leaseMillis * INSTANCE_EXPIRE_FACTOR);
+
+        if (initializedShards != shardCount) {
+            List<Object[]> shards = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                shards.add(new Object[]{shard});
+            }
+            jdbcTemplate.batchUpdate(INSERT_SHARD_SQL, shards);
+            initializedShards = shardCount;
+        }
+
+        ConsistentHashRing ring = new ConsistentHashRing(live, config.getVirtualNodes());
+        List<Object[]> claims = new ArrayList<>();
+        List<Object[]> releases = new ArrayList<>();
+        Set<Integer> assigned = new TreeSet<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (self.equals(ring.locate("shard:" + shard))) {
+                assigned.add(shard);
+                claims.add(new Object[]{self, now + leaseMillis, shard, self, now});
+            } else if (ownership.shards.contains(shard)) {
+                releases.add(new Object[]{shard, self});
+            }
+        }
+
+        // 先停止采集将要让出的分片，再释放租约
+        if (!releases.isEmpty()) {
+            Set<Integer> kept = new TreeSet<>(ownership.shards);
+            releases.forEach(args -> kept.remove((Integer) args[0]));
+            ownership = new Ownership(kept, ownership.validUntil, ownership.liveInstances, ownership.assigned);
+            jdbcTemplate.batchUpdate(RELEASE_SQL, releases);
+        }
+        if (!claims.isEmpty()) {
+            jdbcTemplate.batchUpdate(CLAIM_SQL, claims);
+        }
+
+        // 以数据库中的租约为准，被其他实例持有且未到期的分片等下一次心跳再认领
+        Set<Integer> owned = new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT shard_id FROM collector_lease WHERE owner_id = ? AND lease_until > ?",
+                Integer.class, self, now));
+        owned.retainAll(assigned);
+
+        Set<Integer> previous = ownership.shards;
+        ownership = new Ownership(owned, now + leaseMillis, live, assigned);
+        if (!owned.equals(previous)) {
+            log.info("采集分片变化, instanceId: {}, 存活实例数: {}, 分配分片数: {}, 持有分片数: {}",
+                    self, live.size(), assigned.size(), owned.size());
+        }
+    }
+
+    private int shardOf(Long poolId) {
+        return (int) Math.floorMod(ConsistentHashRing.hash("pool:" + poolId), (long) shardCount());
+    }
+
+    private int shardCount() {
+        return Math.max(1, appConfig.getCluster().getShardCount());
+    }
+
+    private boolean isEnabled() {
+        return appConfig.getCluster().isEnabled();
+    }
+
+    private String getInstanceId() {
+        if (instanceId == null) {
+            String configured = appConfig.getCluster().getInstanceId();
+            instanceId = StringUtils.hasText(configured) ? configured.trim() : defaultInstanceId();
+        }
+        return instanceId;
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * 本实例持有的分片快照
+     */
+    private static final class Ownership {
+
+        static final Ownership NONE = new Ownership(Collections.emptySet(), 0, Collections.emptyList(), Collections.emptySet());
+
+        private final Set<Integer> shards;
+        private final long validUntil;
+        private final List<String> liveInstances;
+        private final Set<Integer> assigned;
+
+        Ownership(Set<Integer> shards, long validUntil, List<String> liveInstances, Set<Integer> assigned) {
+            this.shards = Collections.unmodifiableSet(shards);
+            this.validUntil = validUntil;
+            this.liveInstances = Collections.unmodifiableList(liveInstances);
+            this.assigned = Collections.unmodifiableSet(assigned);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.zjc.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环
+ * 每个实例在环上放置若干虚拟节点，键落在顺时针方向第一个节点所属的实例上。
+ * 实例加入或离开时只有相邻区间的键改变归属，其余键不动。
+ * 哈希只依赖输入字符串，不同JVM对同一组实例计算出相同的结果
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class ConsistentHashRing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param instances 实例ID
+     * @param virtualNodes 每个实例的虚拟节点数
+     */
+    public ConsistentHashRing(Collection<String> instances, int virtualNodes) {
+        int replicas = Math.max(1, virtualNodes);
+        for (String instance : instances) {
+            for (int i = 0; i < replicas; i++) {
+                // 哈希冲突时保留字典序较小的实例，保证各实例计算结果一致
+                ring.merge(hash(instance + "#" + i), instance, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    /**
+     * 查找键所属的实例
+     *
+     * @return 实例ID，环为空时返回null
+     */
+    public String locate(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * 64位FNV-1a哈希，再做一次混合让相近的输入分散开
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,60 @@
+package com.zjc.common;
+
+/**
+ * 号池采集优先级
+ * 过载时按优先级从高到低分配采集预算，关键号池始终按时采集，低优先级号池拉长采集间隔
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public enum PoolPriority {
+
+    CRITICAL("critical"),
+    HIGH("high"),
+    NORMAL("normal"),
+    LOW("low");
+
+    private final String code;
+
+    PoolPriority(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 排序值，越小越优先
+     */
+    public int getRank() {
+        return ordinal();
+    }
+
+    /**
+     * 按编码查找优先级
+     *
+     * @return 优先级，未设置或无法识别时为NORMAL
+     */
+    public static PoolPriority of(String code) {
+        PoolPriority priority = find(code);
+        return priority != null ? priority : NORMAL;
+    }
+
+    /**
+     * 按编码查找优先级
+     *
+     * @return 优先级，无法识别时返回null
+     */
+    public static PoolPriority find(String code) {
+        if (code == null) {
+            return null;
+        }
+        for (PoolPriority priority : values()) {
+            if (priority.code.equalsIgnoreCase(code.trim())) {
+                return priority;
+            }
+        }
+        return null;
+    }
+}
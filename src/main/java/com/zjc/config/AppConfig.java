@@ -30,6 +30,26 @@ public class AppConfig {
      */
     private Cache cache = new Cache();
 
+    /**
+     * 迷你趋势图配置
+     */
+    private Sparkline sparkline = new Sparkline();
+
+    /**
+     * 多实例采集配置
+     */
+    private Cluster cluster = new Cluster();
+
+    /**
+     * 只读副本配置
+     */
+    private Replica replica = new Replica();
+
+    /**
+     * 多进程缓存一致性配置
+     */
+    private Coherence coherence = new Coherence();
+
     @Data
     public static class Collection {
         /**
@@ -43,9 +63,64 @@ public class AppConfig {
         private int timeout = 30;
 
         /**
-         * 最大并发采集数
+         * 每种数据源类型的最大并发采集数，实际并发上限在此范围内自适应调整
          */
         private int maxConcurrent = 10;
+
+        /**
+         * 同一上游端点请求的合并窗口（毫秒）
+         */
+        private int coalesceWindowMs = 20;
+
+        /**
+         * 是否对慢请求发出对冲请求
+         */
+        private boolean hedgingEnabled = false;
+
+        /**
+         * 定时任务调度线程数
+         */
+        private int schedulerPoolSize = 4;
+
+        /**
+         * 采集调度的检查间隔（毫秒），每次只采集到期的号池
+         */
+        private long tickMillis = 5000;
+
+        /**
+         * 是否根据压力变化自适应调整各号池的采集间隔
+         */
+        private boolean adaptiveSampling = false;
+
+        /**
+         * 采集间隔下限（秒）
+         */
+        private int minIntervalSeconds = 10;
+
+        /**
+         * 采集间隔上限（秒）
+         */
+        private int maxIntervalSeconds = 600;
+
+        /**
+         * 全局每分钟上游采集次数预算，超出时整体拉长采集间隔，0表示不限制
+         */
+        private int maxCallsPerMinute = 0;
+
+        /**
+         * 是否只在样本变化时写入状态记录
+         */
+        private boolean changeOnlyStorage = false;
+
+        /**
+         * 样本不变时写入心跳记录的间隔（秒）
+         */
+        private int heartbeatSeconds = 600;
+
+        /**
+         * 号池最后更新状态刷入数据库的间隔（毫秒），采集周期结束时也会刷新
+         */
+        private long statusFlushMillis = 10000;
     }
 
     @Data
@@ -60,4 +135,76 @@ public class AppConfig {
          */
         private int maxSize = 1000;
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class Sparkline {
+        /**
+         * 时间窗口（小时）
+         */
+        private int windowHours = 24;
+
+        /**
+         * 采样点数
+         */
+        private int points = 48;
+    }
+
+    @Data
+    public static class Cluster {
+        /**
+         * 是否开启多实例分片采集，关闭时本实例采集所有号池
+         */
+        private boolean enabled = false;
+
+        /**
+         * 实例ID，为空时使用主机名和进程号
+         */
+        private String instanceId;
+
+        /**
+         * 分片数，所有实例必须一致
+         */
+        private int shardCount = 64;
+
+        /**
+         * 每个实例在哈希环上的虚拟节点数
+         */
+        private int virtualNodes = 100;
+
+        /**
+         * 心跳和续租间隔（毫秒）
+         */
+        private long heartbeatMillis = 5000;
+
+        /**
+         * 租约时长（毫秒），超过该时间没有心跳的实例视为下线，其分片可被接管
+         */
+        private long leaseMillis = 15000;
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * 是否以只读副本运行：不采集、不初始化数据库，只提供查询接口
+         */
+        private boolean enabled = false;
+
+        /**
+         * 写入实例发布变更信号的间隔（毫秒）
+         */
+        private long signalMillis = 1000;
+    }
+
+    @Data
+    public static class Coherence {
+        /**
+         * 是否检查其他进程对数据库的修改并刷新内存缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 检查间隔（毫秒）
+         */
+        private long pollMillis = 1000;
+    }
+}
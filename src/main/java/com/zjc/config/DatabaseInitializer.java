@@ -3,6 +3,7 @@ package com.zjc.config;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
@@ -10,16 +11,18 @@ import org.springframework.stereotype.Component;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * 数据库初始化器
- * 在应用启动时执行数据库初始化脚本
+ * 在应用启动时执行数据库初始化脚本，只读副本不执行
  * 
  * @author zjc
  * @since 2024-01-06
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(prefix = "app.replica", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class DatabaseInitializer implements CommandLineRunner {
 
     @Autowired
@@ -32,6 +35,8 @@ public class DatabaseInitializer implements CommandLineRunner {
         try {
             // 执行数据库初始化脚本
             executeSqlScript("sql/schema.sql");
+            // 为已存在的旧表补充新增字段
+            migrateColumns();
             log.info("数据库初始化完成");
         } catch (Exception e) {
             log.error("数据库初始化失败", e);
@@ -39,6 +44,37 @@ public class DatabaseInitializer implements CommandLineRunner {
         }
     }
 
+    /**
+     * 补充旧版本数据库中缺少的字段
+     * CREATE TABLE IF NOT EXISTS不会修改已存在的表，新增字段需要在这里登记
+     */
+    private void migrateColumns() {
+        addColumnIfMissing("virtual_pool", "virtual_pool_ids", "TEXT");
+        addColumnIfMissing("virtual_pool", "metric_formulas", "TEXT");
+        addColumnIfMissing("pool", "priority", "VARCHAR(20) DEFAULT 'normal'");
+    }
+
+    /**
+     * 字段不存在时添加字段
+     * 
+     * @param table 表名
+     * @param column 字段名
+     * @param definition 字段定义
+     */
+    private void addColumnIfMissing(String table, String column, String definition) {
+        try {
+            List<String> columns = jdbcTemplate.query("PRAGMA table_info(" + table + ")",
+                    (rs, rowNum) -> rs.getString("name"));
+            if (columns.stream().anyMatch(column::equalsIgnoreCase)) {
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            log.info("已添加字段: {}.{}", table, column);
+        } catch (Exception e) {
+            log.warn("添加字段失败: {}.{}, 错误: {}", table, column, e.getMessage());
+        }
+    }
+
     /**
      * 执行SQL脚本文件
      * 
@@ -0,0 +1,79 @@
+package com.zjc.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjc.common.Result;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 只读副本写操作拦截器
+ * 只读副本以只读方式打开数据库，修改数据的接口直接拒绝，查询接口照常提供
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReplicaWriteInterceptor implements HandlerInterceptor {
+    
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * 不修改数据的POST接口
+     */
+    private static final List<String> READ_ONLY_POST_PATTERNS = Arrays.asList(
+        "/api/auth/", // 登录、登出
+        "/api/pool-status/latest/batch", // 批量查询最新状态
+        "/api/virtual-pools/validate", // 校验虚拟池配置
+        "/api/virtual-pools/preview", // 预览虚拟池聚合结果
+        "/api/datasource/test-" // 测试数据源
+    );
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!appConfig.getReplica().isEnabled() || !isWriteRequest(request.getRequestURI(), request.getMethod())) {
+            return true;
+        }
+        
+        log.debug("只读副本拒绝写操作: {} {}", request.getMethod(), request.getRequestURI());
+        sendForbiddenResponse(response);
+        return false;
+    }
+    
+    /**
+     * 检查是否为修改数据的请求
+     */
+    private boolean isWriteRequest(String requestURI, String method) {
+        if ("PUT".equals(method) || "DELETE".equals(method) || "PATCH".equals(method)) {
+            return true;
+        }
+        if ("POST".equals(method)) {
+            return READ_ONLY_POST_PATTERNS.stream().noneMatch(requestURI::startsWith);
+        }
+        return false;
+    }
+    
+    /**
+     * 发送拒绝响应
+     */
+    private void sendForbiddenResponse(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+        response.setContentType("application/json;charset=UTF-8");
+        
+        Result<Void> result = Result.error(403, "只读副本不支持修改操作，请在写入实例上操作");
+        String jsonResponse = objectMapper.writeValueAsString(result);
+        
+        response.getWriter().write(jsonResponse);
+        response.getWriter().flush();
+    }
+}
@@ -0,0 +1,38 @@
+package com.zjc.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * 定时任务调度配置
+ * 定时任务使用独立的调度线程池，采集周期较长时不会推迟数据清理和连接检查
+ * 
+ * @author zjc
+ * @version 1.0.0
+ */
+@Configuration
+public class SchedulingConfig implements SchedulingConfigurer {
+
+    @Autowired
+    private AppConfig appConfig;
+
+    /**
+     * 调度线程池，交给容器管理以便关闭时释放
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, appConfig.getCollection().getSchedulerPoolSize()));
+        scheduler.setThreadNamePrefix("scheduler-");
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.setTaskScheduler(taskScheduler());
+    }
+}
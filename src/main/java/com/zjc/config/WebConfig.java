@@ -16,9 +16,12 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
     
     private final AuthInterceptor authInterceptor;
+    private final ReplicaWriteInterceptor replicaWriteInterceptor;
     
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(replicaWriteInterceptor)
+                .addPathPatterns("/api/**"); // 只读副本拒绝写操作
         registry.addInterceptor(authInterceptor)
                 .addPathPatterns("/api/**") // 拦截所有API请求
                 .excludePathPatterns(
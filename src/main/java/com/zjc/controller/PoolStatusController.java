@@ -2,7 +2,10 @@ package com.zjc.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.zjc.common.Result;
+import com.zjc.dto.PoolSparklineDTO;
 import com.zjc.dto.PoolStatusDTO;
+import com.zjc.dto.PoolStatusTrendDeltaDTO;
+import com.zjc.dto.PoolTrendMatrixDTO;
 import com.zjc.service.PoolStatusService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +26,11 @@ import java.util.Map;
 @CrossOrigin
 public class PoolStatusController {
 
+    /**
+     * 对齐趋势查询一次最多包含的号池数
+     */
+    private static final int MAX_ALIGNED_POOLS = 50;
+
     @Autowired
     private PoolStatusService poolStatusService;
 
@@ -142,6 +150,72 @@ public class PoolStatusController {
         }
     }
 
+    /**
+     * 增量获取号池状态趋势数据
+     * 携带after参数时只返回该记录时间之后的新样本，只支持原始精度；
+     * 按间隔采样的趋势需要重新请求完整趋势，采样网格以完整趋势的结果为准
+     */
+    @GetMapping(value = "/trend/{poolId}", params = "after")
+    public Result<PoolStatusTrendDeltaDTO> getPoolStatusTrendSince(
+            @PathVariable Long poolId,
+            @RequestParam Long after,
+            @RequestParam(required = false) Integer interval) {
+
+        if (interval != null && interval > 0) {
+            return Result.error("增量趋势只支持原始精度，不支持interval采样");
+        }
+        try {
+            PoolStatusTrendDeltaDTO delta = poolStatusService.getPoolStatusTrendSince(poolId, after);
+            return Result.success(delta);
+        } catch (Exception e) {
+            log.error("增量获取号池状态趋势数据失败, poolId: {}, after: {}", poolId, after, e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取多个号池在同一时间网格上对齐的趋势矩阵，用于对比图表
+     */
+    @GetMapping("/trend/aligned")
+    public Result<PoolTrendMatrixDTO> getAlignedPoolStatusTrend(
+            @RequestParam List<Long> poolIds,
+            @RequestParam(required = false) Long startTime,
+            @RequestParam(required = false) Long endTime,
+            @RequestParam(required = false) Integer bucketSeconds) {
+        
+        if (poolIds.isEmpty()) {
+            return Result.badRequest("号池ID列表不能为空");
+        }
+        if (poolIds.size() > MAX_ALIGNED_POOLS) {
+            return Result.badRequest("一次最多对比 " + MAX_ALIGNED_POOLS + " 个号池");
+        }
+        if (startTime != null && endTime != null && startTime >= endTime) {
+            return Result.badRequest("开始时间必须早于结束时间");
+        }
+        
+        try {
+            PoolTrendMatrixDTO matrix = poolStatusService.getAlignedPoolStatusTrend(poolIds, startTime, endTime, bucketSeconds);
+            return Result.success(matrix);
+        } catch (Exception e) {
+            log.error("获取号池对齐趋势数据失败, poolIds: {}", poolIds, e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取所有公开号池的迷你趋势图数据
+     */
+    @GetMapping("/sparklines")
+    public Result<PoolSparklineDTO> getPublicPoolSparklines() {
+        try {
+            PoolSparklineDTO sparklines = poolStatusService.getPublicPoolSparklines();
+            return Result.success(sparklines);
+        } catch (Exception e) {
+            log.error("获取号池迷你趋势图数据失败", e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取号池状态统计信息
      */
@@ -1,11 +1,16 @@
 package com.zjc.controller;
 
+import com.zjc.cache.CacheCoherenceWatcher;
+import com.zjc.cluster.CollectorCluster;
 import com.zjc.common.Result;
+import com.zjc.datasource.DataSourceManager;
 import com.zjc.task.PoolDataUpdateTask;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 /**
  * 任务管理控制器
  * 
@@ -18,9 +23,21 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin
 public class TaskController {
 
-    @Autowired
+    /**
+     * 只读副本不采集，没有该任务
+     */
+    @Autowired(required = false)
     private PoolDataUpdateTask poolDataUpdateTask;
 
+    @Autowired
+    private DataSourceManager dataSourceManager;
+
+    @Autowired
+    private CollectorCluster collectorCluster;
+
+    @Autowired(required = false)
+    private CacheCoherenceWatcher cacheCoherenceWatcher;
+
     /**
      * 手动触发更新所有号池状态
      */
@@ -28,7 +45,7 @@ public class TaskController {
     public Result<Void> updateAllPools() {
         try {
             log.info("手动触发更新所有号池状态");
-            poolDataUpdateTask.updateAllPoolStatusManually();
+            updateTask().updateAllPoolStatusManually();
             return Result.<Void>success("更新任务已启动");
         } catch (Exception e) {
             log.error("手动触发更新所有号池状态失败", e);
@@ -43,7 +60,7 @@ public class TaskController {
     public Result<Void> updatePool(@PathVariable Long poolId) {
         try {
             log.info("手动触发更新号池状态, poolId: {}", poolId);
-            poolDataUpdateTask.updatePoolStatusManually(poolId);
+            updateTask().updatePoolStatusManually(poolId);
             return Result.<Void>success("更新任务已启动");
         } catch (Exception e) {
             log.error("手动触发更新号池状态失败, poolId: {}", poolId, e);
@@ -57,11 +74,86 @@ public class TaskController {
     @GetMapping("/statistics")
     public Result<String> getTaskStatistics() {
         try {
-            String statistics = poolDataUpdateTask.getTaskStatistics();
+            String statistics = updateTask().getTaskStatistics();
             return Result.success(statistics);
         } catch (Exception e) {
             log.error("获取任务统计信息失败", e);
             return Result.error("获取失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取各数据源类型的熔断、超时和重试状态
+     */
+    @GetMapping("/data-sources")
+    public Result<Map<String, Map<String, Object>>> getDataSourceStatistics() {
+        try {
+            return Result.success(dataSourceManager.getResilienceStatistics());
+        } catch (Exception e) {
+            log.error("获取数据源保护状态失败", e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取各号池的采集统计
+     */
+    @GetMapping("/collections")
+    public Result<Map<Long, Map<String, Object>>> getCollectionStatistics() {
+        try {
+            return Result.success(updateTask().getCollectionStatistics());
+        } catch (Exception e) {
+            log.error("获取号池采集统计失败", e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取各号池的采集频率
+     */
+    @GetMapping("/sampling")
+    public Result<Map<String, Object>> getSamplingStatistics() {
+        try {
+            return Result.success(updateTask().getSamplingStatistics());
+        } catch (Exception e) {
+            log.error("获取采集频率统计失败", e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取多实例分片采集状态
+     */
+    @GetMapping("/cluster")
+    public Result<Map<String, Object>> getClusterStatistics() {
+        try {
+            return Result.success(collectorCluster.getStatistics());
+        } catch (Exception e) {
+            log.error("获取集群状态失败", e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取多进程缓存一致性检查状态
+     */
+    @GetMapping("/coherence")
+    public Result<Map<String, Object>> getCoherenceStatistics() {
+        try {
+            if (cacheCoherenceWatcher == null) {
+                throw new RuntimeException("缓存一致性检查未开启");
+            }
+            return Result.success(cacheCoherenceWatcher.getStatistics());
+        } catch (Exception e) {
+            log.error("获取缓存一致性检查状态失败", e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
+    private PoolDataUpdateTask updateTask() {
+        if (poolDataUpdateTask == null) {
+            throw new RuntimeException("只读副本不采集号池数据");
+        }
+        return poolDataUpdateTask;
+    }
+}
@@ -282,6 +282,24 @@ public class VirtualPoolController {
         }
     }
 
+    /**
+     * 获取多个虚拟聚合池的成员号池交集和并集
+     */
+    @GetMapping("/membership")
+    public Result<Map<String, Object>> getVirtualPoolMembership(@RequestParam List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Result.badRequest("虚拟池ID列表不能为空");
+        }
+        
+        try {
+            Map<String, Object> membership = virtualPoolService.getVirtualPoolMembership(ids);
+            return Result.success(membership);
+        } catch (Exception e) {
+            log.error("获取虚拟聚合池成员关系失败, ids: {}", ids, e);
+            return Result.error("获取失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取虚拟聚合池统计信息
      */
@@ -0,0 +1,99 @@
+package com.zjc.datasource;
+
+import com.zjc.dto.PoolDTO;
+import com.zjc.dto.PoolStatusDTO;
+import org.json.JSONException;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 号池与数据源服务的绑定
+ * 数据源服务和序列化后的配置在绑定时一次解析，每次采集只是一次接口调用
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class DataSourceBinding {
+
+    /**
+     * 创建绑定时使用的号池对象
+     */
+    private final PoolDTO source;
+    private final PoolDataSourceService service;
+    private final String configJson;
+
+    /**
+     * 上游端点标识，用于合并同一端点的请求
+     */
+    private final String endpointKey;
+
+    DataSourceBinding(PoolDTO source, PoolDataSourceService service, String configJson, String endpointKey) {
+        this.source = source;
+        this.service = service;
+        this.configJson = configJson;
+        this.endpointKey = endpointKey;
+    }
+
+    /**
+     * 获取号池状态数据
+     */
+    public PoolStatusDTO fetch() throws JSONException {
+        return service.getPoolStatus(source.getId(), source.getName(), configJson);
+    }
+
+    /**
+     * 异步获取号池状态数据
+     */
+    public CompletableFuture<PoolStatusDTO> fetchAsync() {
+        return service.getPoolStatusAsync(source.getId(), source.getName(), configJson);
+    }
+
+    /**
+     * 转换为批量请求
+     */
+    public PoolRequest toRequest() {
+        return new PoolRequest(source.getId(), source.getName(), configJson);
+    }
+
+    /**
+     * 检查数据源连接
+     */
+    public boolean checkConnection() {
+        return service.checkConnection(configJson);
+    }
+
+    public Long getPoolId() {
+        return source.getId();
+    }
+
+    /**
+     * 号池的采集优先级编码
+     */
+    public String getPriority() {
+        return source.getPriority();
+    }
+
+    public PoolDataSourceService getService() {
+        return service;
+    }
+
+    public String getConfigJson() {
+        return configJson;
+    }
+
+    public String getEndpointKey() {
+        return endpointKey;
+    }
+
+    /**
+     * 判断绑定是否仍适用于号池
+     * 号池变更时绑定已随变更事件移除，这里只比较更新时间和数据源配置，调用方拿到的是目录对象的副本时也能复用绑定
+     */
+    boolean isBoundTo(PoolDTO pool) {
+        return source == pool
+                || (Objects.equals(source.getUpdateTime(), pool.getUpdateTime())
+                    && Objects.equals(source.getDataSourceClass(), pool.getDataSourceClass())
+                    && Objects.equals(source.getDataSourceConfig(), pool.getDataSourceConfig()));
+    }
+}
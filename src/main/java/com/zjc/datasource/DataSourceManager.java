@@ -1,19 +1,29 @@
 package com.zjc.datasource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjc.datasource.resilience.BulkheadFullException;
+import com.zjc.datasource.resilience.DataSourceBulkheads;
+import com.zjc.datasource.resilience.DataSourceGuard;
+import com.zjc.datasource.resilience.DataSourceUnavailableException;
 import com.zjc.dto.DataSourceTypeDTO;
+import com.zjc.dto.PoolDTO;
 import com.zjc.dto.PoolStatusDTO;
+import com.zjc.event.PoolChangedEvent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -30,6 +40,15 @@ public class DataSourceManager {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private DataSourceRequestCoalescer requestCoalescer;
+
+    @Autowired
+    private DataSourceGuard dataSourceGuard;
+
+    @Autowired
+    private DataSourceBulkheads dataSourceBulkheads;
+
     /**
      * JSON对象映射器
      */
@@ -42,10 +61,16 @@ public class DataSourceManager {
     private final Map<String, PoolDataSourceService> dataSourceServices = new ConcurrentHashMap<>();
 
     /**
-     * 反射方法缓存
-     * key: 类名.方法名, value: 方法对象
+     * 按完整类名索引的数据源服务，兼容data_source_class填写类名的号池
+     * key: 类名, value: 数据源服务实例
+     */
+    private final Map<String, PoolDataSourceService> servicesByClassName = new ConcurrentHashMap<>();
+
+    /**
+     * 号池绑定缓存
+     * key: 号池ID, value: 绑定
      */
-    private final Map<String, Method> methodCache = new ConcurrentHashMap<>();
+    private final Map<Long, DataSourceBinding> bindings = new ConcurrentHashMap<>();
 
     /**
      * 初始化数据源服务
@@ -63,6 +88,7 @@ public class DataSourceManager {
                 String dataSourceType = service.getDataSourceType();
                 
                 dataSourceServices.put(dataSourceType, service);
+                indexByClassName(service);
                 log.info("注册数据源服务: {} - {}", dataSourceType, service.getDescription());
             }
             
@@ -86,16 +112,15 @@ public class DataSourceManager {
         log.debug("获取号池状态数据, poolId: {}, poolName: {}, dataSourceClass: {}", poolId, poolName, dataSourceClass);
         
         try {
-            // 首先尝试使用注册的数据源服务
-            PoolDataSourceService service = dataSourceServices.get(dataSourceClass);
-            if (service != null) {
-                // 将Map转换为JSON字符串传递给服务
-                String configJson = convertMapToJson(dataSourceConfig);
-                return service.getPoolStatus(poolId, poolName, configJson);
+            PoolDataSourceService service = resolveService(dataSourceClass);
+            if (service == null) {
+                log.error("未找到数据源服务, poolId: {}, dataSourceClass: {}", poolId, dataSourceClass);
+                return createErrorStatus(poolId);
             }
             
-            // 如果没有找到注册的服务，尝试使用反射调用
-            return getPoolStatusByReflection(poolId, poolName, dataSourceClass, dataSourceConfig);
+            // 将Map转换为JSON字符串传递给服务
+            String configJson = convertMapToJson(dataSourceConfig);
+            return service.getPoolStatus(poolId, poolName, configJson);
             
         } catch (Exception e) {
             log.error("获取号池状态数据失败, poolId: {}, dataSourceClass: {}", poolId, dataSourceClass, e);
@@ -103,6 +128,53 @@ public class DataSourceManager {
         }
     }
 
+
+    /**
+     * 获取多个号池的状态数据
+     * 支持批量的数据源按上游端点在合并窗口内合并为一次调用，同一号池未完成的请求直接复用。
+     * 获取失败或数据源熔断时结果为null，调用方跳过本次写入，不再写入全零的状态。
+     * 数据源调用在所属数据源类型的隔离舱线程中执行，调用方无需提供线程池；
+     * 调用方取消或超时结束返回的结果时，会一并取消对应的上游调用
+     *
+     * @param pools 号池列表
+     * @return key: 号池ID, value: 号池状态数据，获取失败时为null
+     */
+    public Map<Long, CompletableFuture<PoolStatusDTO>> getPoolStatuses(List<PoolDTO> pools) {
+        Map<Long, CompletableFuture<PoolStatusDTO>> result = new LinkedHashMap<>();
+        
+        for (PoolDTO pool : pools) {
+            DataSourceBinding binding = getBinding(pool);
+            if (binding == null) {
+                log.error("未找到数据源服务, poolId: {}, dataSourceClass: {}", pool.getId(), pool.getDataSourceClass());
+                result.put(pool.getId(), CompletableFuture.completedFuture(null));
+                continue;
+            }
+            
+            CompletableFuture<PoolStatusDTO> source = requestCoalescer.submit(binding);
+            CompletableFuture<PoolStatusDTO> handled = source.handle((status, e) -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof DataSourceUnavailableException) {
+                    log.debug("数据源已熔断，跳过本次采集, poolId: {}, dataSourceClass: {}", pool.getId(), pool.getDataSourceClass());
+                } else if (cause instanceof BulkheadFullException) {
+                    log.warn("数据源并发已满，跳过本次采集, poolId: {}, dataSourceClass: {}", pool.getId(), pool.getDataSourceClass());
+                } else if (cause != null) {
+                    log.warn("获取号池状态数据失败, poolId: {}, dataSourceClass: {}, 错误: {}",
+                            pool.getId(), pool.getDataSourceClass(), cause.toString());
+                }
+                return status;
+            });
+            // 调用方提前结束（如采集周期到期）时取消上游调用
+            handled.whenComplete((status, e) -> {
+                if (e != null) {
+                    source.cancel(true);
+                }
+            });
+            result.put(pool.getId(), handled);
+        }
+        
+        return result;
+    }
+
     /**
      * 检查数据源连接
      *
@@ -114,16 +186,15 @@ public class DataSourceManager {
         log.debug("检查数据源连接, dataSourceClass: {}", dataSourceClass);
         
         try {
-            // 首先尝试使用注册的数据源服务
-            PoolDataSourceService service = dataSourceServices.get(dataSourceClass);
-            if (service != null) {
-                // 将Map转换为JSON字符串传递给服务
-                String configJson = convertMapToJson(dataSourceConfig);
-                return service.checkConnection(configJson);
+            PoolDataSourceService service = resolveService(dataSourceClass);
+            if (service == null) {
+                log.error("未找到数据源服务, dataSourceClass: {}", dataSourceClass);
+                return false;
             }
             
-            // 如果没有找到注册的服务，尝试使用反射调用
-            return checkConnectionByReflection(dataSourceClass, dataSourceConfig);
+            // 将Map转换为JSON字符串传递给服务
+            String configJson = convertMapToJson(dataSourceConfig);
+            return service.checkConnection(configJson);
             
         } catch (Exception e) {
             log.error("检查数据源连接失败, dataSourceClass: {}", dataSourceClass, e);
@@ -132,92 +203,108 @@ public class DataSourceManager {
     }
 
     /**
-     * 获取所有可用的数据源类型
-     * 
-     * @return 数据源类型映射
+     * 检查号池的数据源连接，使用缓存的绑定
+     *
+     * @param pool 号池
+     * @return 连接是否正常
      */
-    public List<DataSourceTypeDTO> getAvailableDataSources() {
-        List<DataSourceTypeDTO> result = new ArrayList<>();
+    public boolean checkConnection(PoolDTO pool) {
+        try {
+            DataSourceBinding binding = getBinding(pool);
+            return binding != null && binding.checkConnection();
+        } catch (Exception e) {
+            log.error("检查数据源连接失败, poolId: {}, dataSourceClass: {}", pool.getId(), pool.getDataSourceClass(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 获取号池的数据源绑定
+     * 号池变更事件会移除旧绑定，更新时间或数据源配置不同的号池对象也会重新绑定
+     *
+     * @param pool 号池
+     * @return 绑定，找不到数据源服务时返回null
+     */
+    public DataSourceBinding getBinding(PoolDTO pool) {
+        DataSourceBinding binding = bindings.get(pool.getId());
+        if (binding != null && binding.isBoundTo(pool)) {
+            return binding;
+        }
         
-        for (PoolDataSourceService service : dataSourceServices.values()) {
-            result.add(new DataSourceTypeDTO(
-                service.getDataSourceType(),
-                service.getDescription(),
-                service.getClassFullName()
-            ));
+        PoolDataSourceService service = resolveService(pool.getDataSourceClass());
+        if (service == null) {
+            bindings.remove(pool.getId());
+            return null;
         }
         
-        return result;
+        String configJson = convertMapToJson(pool.getDataSourceConfig());
+        binding = new DataSourceBinding(pool, service, configJson, service.getEndpointKey(configJson));
+        bindings.put(pool.getId(), binding);
+        return binding;
+    }
+
+    /**
+     * 号池变更后移除绑定
+     */
+    @EventListener
+    public void onPoolChanged(PoolChangedEvent event) {
+        event.getIds().forEach(bindings::remove);
     }
 
     /**
-     * 通过反射获取号池状态数据
+     * 按数据源类型或完整类名查找数据源服务
+     * 类名首次出现时从Spring容器中按类型查找并缓存，之后不再反射
+     *
+     * @param dataSourceClass 数据源类型或完整类名
+     * @return 数据源服务，找不到时返回null
      */
-    private PoolStatusDTO getPoolStatusByReflection(Long poolId, String poolName, String dataSourceClass, Map<String, Object> dataSourceConfig) {
+    public PoolDataSourceService resolveService(String dataSourceClass) {
+        if (dataSourceClass == null || dataSourceClass.trim().isEmpty()) {
+            return null;
+        }
+        
+        PoolDataSourceService service = dataSourceServices.get(dataSourceClass);
+        if (service != null) {
+            return service;
+        }
+        
+        service = servicesByClassName.get(dataSourceClass);
+        if (service != null) {
+            return service;
+        }
+        
         try {
-            // 直接使用完整类名
-            String className = dataSourceClass;
-            
-            // 获取类和方法
-            Class<?> clazz = Class.forName(className);
+            Class<?> clazz = Class.forName(dataSourceClass);
             Object instance = applicationContext.getBean(clazz);
-            
-            String methodKey = className + ".getPoolStatus";
-            Method method = methodCache.computeIfAbsent(methodKey, k -> {
-                try {
-                    return clazz.getMethod("getPoolStatus", Long.class, String.class, String.class);
-                } catch (NoSuchMethodException e) {
-                    log.error("未找到方法: {}", k, e);
-                    return null;
-                }
-            });
-            
-            if (method != null) {
-                // 将Map转换为JSON字符串传递给方法
-                String configJson = convertMapToJson(dataSourceConfig);
-                return (PoolStatusDTO) method.invoke(instance, poolId, poolName, configJson);
+            if (instance instanceof PoolDataSourceService) {
+                service = (PoolDataSourceService) instance;
+                servicesByClassName.put(dataSourceClass, service);
+                return service;
             }
-            
+            log.error("数据源类未实现PoolDataSourceService接口: {}", dataSourceClass);
         } catch (Exception e) {
-            log.error("反射调用获取号池状态失败, dataSourceClass: {}", dataSourceClass, e);
+            log.error("查找数据源服务失败, dataSourceClass: {}", dataSourceClass, e);
         }
-        
-        return createErrorStatus(poolId);
+        return null;
     }
 
     /**
-     * 通过反射检查数据源连接
+     * 获取所有可用的数据源类型
+     * 
+     * @return 数据源类型映射
      */
-    private boolean checkConnectionByReflection(String dataSourceClass, Map<String, Object> dataSourceConfig) {
-        try {
-            // 直接使用完整类名
-            String className = dataSourceClass;
-            
-            // 获取类和方法
-            Class<?> clazz = Class.forName(className);
-            Object instance = applicationContext.getBean(clazz);
-            
-            String methodKey = className + ".checkConnection";
-            Method method = methodCache.computeIfAbsent(methodKey, k -> {
-                try {
-                    return clazz.getMethod("checkConnection", String.class);
-                } catch (NoSuchMethodException e) {
-                    log.error("未找到方法: {}", k, e);
-                    return null;
-                }
-            });
-            
-            if (method != null) {
-                // 将Map转换为JSON字符串传递给方法
-                String configJson = convertMapToJson(dataSourceConfig);
-                return (Boolean) method.invoke(instance, configJson);
-            }
-            
-        } catch (Exception e) {
-            log.error("反射调用检查连接失败, dataSourceClass: {}", dataSourceClass, e);
+    public List<DataSourceTypeDTO> getAvailableDataSources() {
+        List<DataSourceTypeDTO> result = new ArrayList<>();
+        
+        for (PoolDataSourceService service : dataSourceServices.values()) {
+            result.add(new DataSourceTypeDTO(
+                service.getDataSourceType(),
+                service.getDescription(),
+                service.getClassFullName()
+            ));
         }
         
-        return false;
+        return result;
     }
 
     /**
@@ -245,6 +332,35 @@ public class DataSourceManager {
         return str.substring(0, 1).toUpperCase() + str.substring(1);
     }
 
+    /**
+     * 获取请求合并统计
+     */
+    public Map<String, Long> getCoalescingStatistics() {
+        return requestCoalescer.getStatistics();
+    }
+
+    /**
+     * 获取各数据源类型的熔断、超时、重试和隔离舱状态
+     *
+     * @return key: 数据源类型, value: 状态
+     */
+    public Map<String, Map<String, Object>> getResilienceStatistics() {
+        Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+        dataSourceGuard.getStatistics().forEach((type, item) -> statistics.put(type, new LinkedHashMap<>(item)));
+        dataSourceBulkheads.getStatistics().forEach((type, item) ->
+                statistics.computeIfAbsent(type, k -> new LinkedHashMap<>()).putAll(item));
+        return statistics;
+    }
+
+    /**
+     * 获取各数据源类型的隔离舱状态
+     *
+     * @return key: 数据源类型, value: 状态
+     */
+    public Map<String, Map<String, Object>> getBulkheadStatistics() {
+        return dataSourceBulkheads.getStatistics();
+    }
+
     /**
      * 获取数据源服务实例
      */
@@ -257,6 +373,8 @@ public class DataSourceManager {
      */
     public void registerDataSourceService(String dataSourceType, PoolDataSourceService service) {
         dataSourceServices.put(dataSourceType, service);
+        indexByClassName(service);
+        bindings.clear();
         log.info("动态注册数据源服务: {} - {}", dataSourceType, service.getDescription());
     }
 
@@ -266,10 +384,20 @@ public class DataSourceManager {
     public void unregisterDataSourceService(String dataSourceType) {
         PoolDataSourceService removed = dataSourceServices.remove(dataSourceType);
         if (removed != null) {
+            servicesByClassName.values().removeIf(service -> service == removed);
+            bindings.clear();
             log.info("注销数据源服务: {}", dataSourceType);
         }
     }
 
+    /**
+     * 按类名登记数据源服务，Spring代理对象同时登记目标类名
+     */
+    private void indexByClassName(PoolDataSourceService service) {
+        servicesByClassName.put(service.getClassFullName(), service);
+        servicesByClassName.put(AopUtils.getTargetClass(service).getName(), service);
+    }
+
     /**
      * 将Map转换为JSON字符串
      */
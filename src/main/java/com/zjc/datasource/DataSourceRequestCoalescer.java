@@ -0,0 +1,277 @@
+package com.zjc.datasource;
+
+import com.zjc.common.PoolPriority;
+import com.zjc.config.AppConfig;
+import com.zjc.datasource.resilience.Bulkhead;
+import com.zjc.datasource.resilience.DataSourceBulkheads;
+import com.zjc.datasource.resilience.DataSourceGuard;
+import com.zjc.dto.PoolStatusDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据源请求合并器
+ * 支持批量的数据源按(数据源服务, 上游端点)分组，短时间窗口内到达的号池请求合并为一次getPoolStatuses调用，
+ * 结果再分发给各个号池；同一号池已有未完成的请求时直接复用，不重复调用上游。
+ * 所有上游调用都经过DataSourceGuard的熔断、超时和重试保护，并在所属数据源类型的隔离舱内执行
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class DataSourceRequestCoalescer {
+
+    /**
+     * 单次合并调用包含的最大号池数，达到后立即发出不再等待窗口结束
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private DataSourceGuard dataSourceGuard;
+
+    @Autowired
+    private DataSourceBulkheads dataSourceBulkheads;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "datasource-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 正在收集请求的分组
+     */
+    private final Map<GroupKey, Group> openGroups = new ConcurrentHashMap<>();
+
+    /**
+     * 未完成的号池请求
+     * key: 号池ID, value: 结果
+     */
+    private final Map<Long, CompletableFuture<PoolStatusDTO>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong upstreamCallCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+
+    /**
+     * 提交号池请求
+     * 数据源支持批量时进入合并窗口，否则单独调用
+     *
+     * @param binding 号池绑定
+     * @return 号池状态数据，数据源没有返回该号池时为null
+     */
+    public CompletableFuture<PoolStatusDTO> submit(DataSourceBinding binding) {
+        requestCount.incrementAndGet();
+
+        CompletableFuture<PoolStatusDTO> existing = inFlight.get(binding.getPoolId());
+        if (existing != null) {
+            deduplicatedCount.incrementAndGet();
+            return existing;
+        }
+
+        if (!binding.getService().supportsBatch()) {
+            CompletableFuture<PoolStatusDTO> future = new CompletableFuture<>();
+            CompletableFuture<PoolStatusDTO> raced = inFlight.putIfAbsent(binding.getPoolId(), future);
+            if (raced != null) {
+                deduplicatedCount.incrementAndGet();
+                return raced;
+            }
+
+            upstreamCallCount.incrementAndGet();
+            Bulkhead bulkhead = dataSourceBulkheads.get(binding.getService());
+            int priority = PoolPriority.of(binding.getPriority()).getRank();
+            CompletableFuture<PoolStatusDTO> call = dataSourceGuard.execute(binding.getService(), false,
+                    () -> bulkhead.submit(priority, binding::fetchAsync));
+            call.whenComplete((status, e) -> complete(binding.getPoolId(), future, status, e));
+            // 调用方提前结束时取消上游调用；批量调用由多个号池共享，只受超时约束
+            future.whenComplete((status, e) -> {
+                if (e != null) {
+                    call.cancel(true);
+                }
+            });
+            return future;
+        }
+
+        GroupKey key = new GroupKey(binding.getService(), binding.getEndpointKey());
+        while (true) {
+            Group group = openGroups.computeIfAbsent(key, this::openGroup);
+            CompletableFuture<PoolStatusDTO> future = group.add(binding);
+            if (future != null) {
+                return future;
+            }
+            // 分组已在并发中关闭，重新打开一个
+        }
+    }
+
+    /**
+     * 获取合并统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("requests", requestCount.get());
+        statistics.put("upstreamCalls", upstreamCallCount.get());
+        statistics.put("deduplicated", deduplicatedCount.get());
+        statistics.put("inFlight", (long) inFlight.size());
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private Group openGroup(GroupKey key) {
+        Group group = new Group(key);
+        long window = Math.max(0, appConfig.getCollection().getCoalesceWindowMs());
+        timer.schedule(group::close, window, TimeUnit.MILLISECONDS);
+        return group;
+    }
+
+    private void complete(Long poolId, CompletableFuture<PoolStatusDTO> future, PoolStatusDTO status, Throwable e) {
+        inFlight.remove(poolId, future);
+        if (e != null) {
+            future.completeExceptionally(e);
+        } else {
+            future.complete(status);
+        }
+    }
+
+    /**
+     * 分组键，同一数据源服务的同一上游端点
+     */
+    private static final class GroupKey {
+
+        private final PoolDataSourceService service;
+        private final String endpoint;
+
+        GroupKey(PoolDataSourceService service, String endpoint) {
+            this.service = service;
+            this.endpoint = endpoint != null ? endpoint : "";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey) o;
+            return service == other.service && endpoint.equals(other.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(service), endpoint);
+        }
+    }
+
+    /**
+     * 一个合并窗口内收集到的请求
+     */
+    private final class Group {
+
+        private final GroupKey key;
+        private final List<PoolRequest> requests = new ArrayList<>();
+        private final Map<Long, CompletableFuture<PoolStatusDTO>> futures = new LinkedHashMap<>();
+        private boolean closed;
+
+        /**
+         * 分组内最高的优先级，批量调用按它排队
+         */
+        private int priority = Integer.MAX_VALUE;
+
+        Group(GroupKey key) {
+            this.key = key;
+        }
+
+        /**
+         * 加入请求
+         *
+         * @return 结果，分组已关闭时返回null
+         */
+        synchronized CompletableFuture<PoolStatusDTO> add(DataSourceBinding binding) {
+            if (closed) {
+                return null;
+            }
+
+            Long poolId = binding.getPoolId();
+            CompletableFuture<PoolStatusDTO> future = new CompletableFuture<>();
+            CompletableFuture<PoolStatusDTO> raced = inFlight.putIfAbsent(poolId, future);
+            if (raced != null) {
+                deduplicatedCount.incrementAndGet();
+                return raced;
+            }
+
+            requests.add(binding.toRequest());
+            futures.put(poolId, future);
+            priority = Math.min(priority, PoolPriority.of(binding.getPriority()).getRank());
+            // 调用方提前结束时立即让出，后续请求不再复用已结束的结果
+            future.whenComplete((status, e) -> inFlight.remove(poolId, future));
+            if (requests.size() >= MAX_BATCH_SIZE) {
+                close();
+            }
+            return future;
+        }
+
+        /**
+         * 关闭窗口并发出合并调用
+         */
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openGroups.remove(key, this);
+            if (requests.isEmpty()) {
+                return;
+            }
+
+            upstreamCallCount.incrementAndGet();
+            try {
+                Bulkhead bulkhead = dataSourceBulkheads.get(key.service);
+                dataSourceGuard.execute(key.service, true, () -> bulkhead.submit(priority, this::fetch))
+                        .whenComplete((statuses, e) -> {
+                            if (e != null) {
+                                log.warn("合并获取号池状态数据失败, dataSourceType: {}, endpoint: {}, 号池数: {}, 错误: {}",
+                                        key.service.getDataSourceType(), key.endpoint, requests.size(), e.toString());
+                            }
+                            futures.forEach((poolId, future) ->
+                                    complete(poolId, future, statuses != null ? statuses.get(poolId) : null, e));
+                        });
+            } catch (Exception e) {
+                log.error("提交合并请求失败, dataSourceType: {}", key.service.getDataSourceType(), e);
+                futures.forEach((poolId, future) -> complete(poolId, future, null, e));
+            }
+        }
+
+        private CompletableFuture<Map<Long, PoolStatusDTO>> fetch() {
+            try {
+                return CompletableFuture.completedFuture(key.service.getPoolStatuses(requests));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+}
@@ -3,9 +3,15 @@ package com.zjc.datasource;
 import com.zjc.dto.PoolStatusDTO;
 import org.json.JSONException;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 号池数据源服务接口
- * 用户需要实现此接口来提供号池状态数据
+ * 用户需要实现此接口来提供号池状态数据；异步和批量方法有默认实现，
+ * 能够原生异步或一次请求获取多个号池的数据源可以覆盖它们
  * 
  * @author zjc
  * @since 2024-01-06
@@ -22,6 +28,60 @@ public interface PoolDataSourceService {
      */
     PoolStatusDTO getPoolStatus(Long poolId, String poolName, String dataSourceConfig) throws JSONException;
 
+    /**
+     * 异步获取号池状态数据
+     * 默认实现在调用线程中同步执行，调用方应在工作线程中调用
+     * 
+     * @param poolId 号池ID
+     * @param poolName 号池名称
+     * @param dataSourceConfig 数据源配置（JSON字符串）
+     * @return 号池状态数据
+     */
+    default CompletableFuture<PoolStatusDTO> getPoolStatusAsync(Long poolId, String poolName, String dataSourceConfig) {
+        try {
+            return CompletableFuture.completedFuture(getPoolStatus(poolId, poolName, dataSourceConfig));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 是否支持批量获取
+     * 返回true时调用方会把使用同一数据源的号池合并为一次getPoolStatuses调用
+     * 
+     * @return 是否支持批量获取
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * 批量获取号池状态数据
+     * 默认实现逐个调用getPoolStatus
+     * 
+     * @param requests 号池请求列表
+     * @return key: 号池ID, value: 号池状态数据，获取失败的号池可以不包含在结果中
+     */
+    default Map<Long, PoolStatusDTO> getPoolStatuses(List<PoolRequest> requests) throws JSONException {
+        Map<Long, PoolStatusDTO> result = new LinkedHashMap<>();
+        for (PoolRequest request : requests) {
+            result.put(request.getPoolId(), getPoolStatus(request.getPoolId(), request.getPoolName(), request.getDataSourceConfig()));
+        }
+        return result;
+    }
+
+    /**
+     * 获取号池配置对应的上游端点标识
+     * 支持批量时，端点标识相同的号池会在短时间窗口内合并为一次getPoolStatuses调用；
+     * 默认所有号池视为同一端点
+     * 
+     * @param dataSourceConfig 数据源配置（JSON字符串）
+     * @return 端点标识，例如上游地址
+     */
+    default String getEndpointKey(String dataSourceConfig) {
+        return "";
+    }
+
     /**
      * 检查数据源连接是否正常
      * 
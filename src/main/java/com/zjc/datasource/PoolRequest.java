@@ -0,0 +1,32 @@
+package com.zjc.datasource;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量获取号池状态时的单个号池请求
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PoolRequest {
+
+    /**
+     * 号池ID
+     */
+    private Long poolId;
+
+    /**
+     * 号池名称
+     */
+    private String poolName;
+
+    /**
+     * 数据源配置（JSON字符串）
+     */
+    private String dataSourceConfig;
+}
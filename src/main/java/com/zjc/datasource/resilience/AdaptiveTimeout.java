@@ -0,0 +1,57 @@
+package com.zjc.datasource.resilience;
+
+/**
+ * 按观测延迟自适应的超时时间
+ * 与TCP重传超时的计算方式相同：平滑延迟加4倍平均偏差，限制在[min, max]之间；
+ * 没有样本时使用上限
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class AdaptiveTimeout {
+
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+
+    private final long minMillis;
+    private double smoothed = -1;
+    private double deviation;
+
+    public AdaptiveTimeout(long minMillis) {
+        this.minMillis = minMillis;
+    }
+
+    /**
+     * 记录一次调用耗时，超时的调用按超时时间记录
+     */
+    public synchronized void record(double latencyMillis) {
+        if (smoothed < 0) {
+            smoothed = latencyMillis;
+            deviation = latencyMillis / 2;
+            return;
+        }
+        deviation = (1 - BETA) * deviation + BETA * Math.abs(smoothed - latencyMillis);
+        smoothed = (1 - ALPHA) * smoothed + ALPHA * latencyMillis;
+    }
+
+    /**
+     * 当前超时时间
+     *
+     * @param maxMillis 上限
+     * @return 超时时间（毫秒）
+     */
+    public synchronized long current(long maxMillis) {
+        if (smoothed < 0) {
+            return maxMillis;
+        }
+        long timeout = (long) Math.ceil(smoothed + 4 * deviation);
+        return Math.max(Math.min(minMillis, maxMillis), Math.min(timeout, maxMillis));
+    }
+
+    /**
+     * 平滑后的延迟，没有样本时返回null
+     */
+    public synchronized Double getSmoothedLatency() {
+        return smoothed < 0 ? null : smoothed;
+    }
+}
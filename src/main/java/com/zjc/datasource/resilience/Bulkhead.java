@@ -0,0 +1,241 @@
+package com.zjc.datasource.resilience;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 单个数据源类型的隔离舱
+ * 独占一组工作线程，并发数受AIMD自适应上限约束：延迟正常且并发被用满时上限加性增长，
+ * 调用失败或延迟超过基线的TOLERANCE倍时上限乘性减小；超出上限的调用按优先级排队（同优先级先到先出），
+ * 队列满时拒绝优先级最低的调用
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public class Bulkhead {
+
+    /**
+     * 排队调用数上限
+     */
+    private static final int MAX_QUEUE = 1000;
+
+    /**
+     * 延迟超过基线的倍数视为拥塞
+     */
+    private static final double TOLERANCE = 2.0;
+
+    /**
+     * 拥塞时上限的缩减系数
+     */
+    private static final double BACKOFF_RATIO = 0.75;
+
+    /**
+     * 基线延迟的平滑系数
+     */
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private final String type;
+    private final int maxLimit;
+    private final ThreadPoolExecutor executor;
+    private final TreeSet<QueuedCall> queue = new TreeSet<>(
+            Comparator.comparingInt((QueuedCall c) -> c.priority).thenComparingLong(c -> c.sequence));
+    private long sequence;
+
+    private double limit;
+    private int inFlight;
+    private double baselineMillis;
+    private int maxQueueDepth;
+    private long submitted;
+    private long rejected;
+    private long limitDecreases;
+
+    public Bulkhead(String type, int maxLimit) {
+        this.type = type;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(1, this.maxLimit / 2);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.maxLimit, this.maxLimit, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "datasource-" + type + "-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在隔离舱内发起调用
+     * 返回的结果在排队期间被提前结束（如超时、取消）时，该调用不再发出；执行中被结束时取消底层调用
+     *
+     * @param priority 优先级，越小越先执行
+     * @param call 发起调用，在隔离舱的工作线程中执行
+     * @return 调用结果，队列已满且没有更低优先级的调用可以让出时以BulkheadFullException失败
+     */
+    public <T> CompletableFuture<T> submit(int priority, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> run(call, result);
+
+        QueuedCall evicted = null;
+        synchronized (this) {
+            submitted++;
+            if (inFlight < (int) limit) {
+                inFlight++;
+            } else {
+                if (queue.size() >= MAX_QUEUE) {
+                    if (queue.last().priority <= priority) {
+                        rejected++;
+                        result.completeExceptionally(new BulkheadFullException(type));
+                        return result;
+                    }
+                    // 让出优先级最低的排队调用
+                    evicted = queue.pollLast();
+                    rejected++;
+                }
+                queue.add(new QueuedCall(priority, sequence++, task,
+                        () -> result.completeExceptionally(new BulkheadFullException(type))));
+                maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+                task = null;
+            }
+        }
+
+        if (evicted != null) {
+            evicted.reject.run();
+        }
+        if (task != null) {
+            dispatch(task);
+        }
+        return result;
+    }
+
+    /**
+     * 获取隔离舱状态
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("concurrencyLimit", (int) limit);
+        statistics.put("maxConcurrencyLimit", maxLimit);
+        statistics.put("inFlight", inFlight);
+        statistics.put("queueDepth", queue.size());
+        statistics.put("maxQueueDepth", maxQueueDepth);
+        statistics.put("submitted", submitted);
+        statistics.put("rejected", rejected);
+        statistics.put("limitDecreases", limitDecreases);
+        statistics.put("baselineLatencyMs", Math.round(baselineMillis));
+        return statistics;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> void run(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            release(0, false, true);
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        // 调用方提前结束（超时或对冲落败被取消）时尽量取消底层调用，异步实现的数据源可以据此中止请求
+        CompletableFuture<T> inner = future;
+        result.whenComplete((value, e) -> {
+            if (e != null) {
+                inner.cancel(true);
+            }
+        });
+
+        future.whenComplete((value, e) -> {
+            // 被取消的调用不作为拥塞信号
+            boolean failed = e != null && !result.isCancelled();
+            release((System.nanoTime() - start) / 1_000_000.0, failed, false);
+            if (e != null) {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    /**
+     * 归还并发名额，按本次结果调整上限，并发出下一个排队的调用
+     */
+    private void release(double latencyMillis, boolean failed, boolean skipped) {
+        Runnable next;
+        synchronized (this) {
+            if (!skipped) {
+                adjustLimit(latencyMillis, failed);
+            }
+            inFlight--;
+            QueuedCall queued = inFlight < (int) limit ? queue.pollFirst() : null;
+            next = queued != null ? queued.task : null;
+            if (next != null) {
+                inFlight++;
+            }
+        }
+
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    private void adjustLimit(double latencyMillis, boolean failed) {
+        boolean congested = failed || (baselineMillis > 0 && latencyMillis > baselineMillis * TOLERANCE);
+        if (congested) {
+            limit = Math.max(1, limit * BACKOFF_RATIO);
+            limitDecreases++;
+        } else if (inFlight >= (int) limit) {
+            // 只有并发被用满时才增长，避免空闲时上限无意义地膨胀
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+
+        if (!failed) {
+            baselineMillis = baselineMillis == 0 ? latencyMillis
+                    : baselineMillis * (1 - BASELINE_ALPHA) + latencyMillis * BASELINE_ALPHA;
+        }
+    }
+
+    private void dispatch(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (Exception e) {
+            // 线程池已关闭
+            synchronized (this) {
+                inFlight--;
+            }
+        }
+    }
+
+    /**
+     * 排队中的调用
+     */
+    private static final class QueuedCall {
+
+        private final int priority;
+        private final long sequence;
+        private final Runnable task;
+        private final Runnable reject;
+
+        QueuedCall(int priority, long sequence, Runnable task, Runnable reject) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+            this.reject = reject;
+        }
+    }
+}
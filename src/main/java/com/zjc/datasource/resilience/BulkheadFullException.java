@@ -0,0 +1,14 @@
+package com.zjc.datasource.resilience;
+
+/**
+ * 数据源隔离舱排队已满时拒绝调用抛出的异常
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String dataSourceType) {
+        super("数据源并发已满: " + dataSourceType);
+    }
+}
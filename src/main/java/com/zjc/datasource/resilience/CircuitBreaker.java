@@ -0,0 +1,137 @@
+package com.zjc.datasource.resilience;
+
+/**
+ * 数据源熔断器
+ * 按最近WINDOW次调用的失败率判断：达到阈值后打开，打开期间直接拒绝调用；
+ * 冷却时间过后进入半开状态，只放行一次试探调用，成功则关闭，失败则重新打开
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class CircuitBreaker {
+
+    /**
+     * 统计的最近调用次数
+     */
+    private static final int WINDOW = 20;
+
+    /**
+     * 计算失败率所需的最少调用次数
+     */
+    private static final int MIN_CALLS = 10;
+
+    /**
+     * 打开熔断的失败率阈值
+     */
+    private static final double FAILURE_THRESHOLD = 0.5;
+
+    /**
+     * 打开后的冷却时间（毫秒）
+     */
+    private static final long OPEN_MILLIS = 30_000L;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean[] outcomes = new boolean[WINDOW];
+    private int position;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * 申请一次调用
+     *
+     * @param now 当前时间戳
+     * @return 是否允许调用
+     */
+    public synchronized boolean tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now - openedAt < OPEN_MILLIS) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            state = State.CLOSED;
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure(long now) {
+        if (state == State.HALF_OPEN) {
+            open(now);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && calls >= MIN_CALLS && (double) failures / calls >= FAILURE_THRESHOLD) {
+            open(now);
+        }
+    }
+
+    /**
+     * 调用没有结果就结束（如被调用方取消）时归还试探名额，半开状态下允许下一次调用继续试探；
+     * 不归还时熔断器会一直停在半开状态拒绝所有调用
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 最近调用的失败率
+     */
+    public synchronized double getFailureRate() {
+        return calls > 0 ? (double) failures / calls : 0.0;
+    }
+
+    private void record(boolean failure) {
+        if (calls == WINDOW) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % WINDOW;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        trialInFlight = false;
+        reset();
+    }
+
+    private void reset() {
+        position = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
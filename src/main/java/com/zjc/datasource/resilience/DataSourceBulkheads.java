@@ -0,0 +1,59 @@
+package com.zjc.datasource.resilience;
+
+import com.zjc.config.AppConfig;
+import com.zjc.datasource.PoolDataSourceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按数据源类型划分的隔离舱
+ * 每种数据源类型使用独立的工作线程和并发上限，慢的数据源不会占满其他数据源的采集线程
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class DataSourceBulkheads {
+
+    @Autowired
+    private AppConfig appConfig;
+
+    /**
+     * key: 数据源类型, value: 隔离舱
+     */
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * 获取数据源所属的隔离舱，首次使用时创建
+     */
+    public Bulkhead get(PoolDataSourceService service) {
+        return bulkheads.computeIfAbsent(service.getDataSourceType(), type -> {
+            int maxConcurrent = appConfig.getCollection().getMaxConcurrent();
+            log.info("创建数据源隔离舱, dataSourceType: {}, 最大并发: {}", type, maxConcurrent);
+            return new Bulkhead(type, maxConcurrent);
+        });
+    }
+
+    /**
+     * 获取各隔离舱状态
+     *
+     * @return key: 数据源类型, value: 状态
+     */
+    public Map<String, Map<String, Object>> getStatistics() {
+        Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+        bulkheads.forEach((type, bulkhead) -> statistics.put(type, bulkhead.getStatistics()));
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(Bulkhead::shutdown);
+    }
+}
@@ -0,0 +1,312 @@
+package com.zjc.datasource.resilience;
+
+import com.zjc.config.AppConfig;
+import com.zjc.datasource.PoolDataSourceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 数据源调用保护
+ * 每种数据源类型一套熔断器、自适应超时和重试预算：
+ * 熔断打开时直接失败；每次调用按观测延迟设置超时；失败后在预算内带随机抖动重试。
+ * 单号池调用超过该数据源观测到的p95仍未返回时，在全局对冲预算内再发一次相同请求，取先返回的结果并取消另一个
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class DataSourceGuard {
+
+    /**
+     * 单次调用最多尝试次数（包括首次）
+     */
+    private static final int MAX_ATTEMPTS = 2;
+
+    /**
+     * 重试退避基数（毫秒）
+     */
+    private static final long BACKOFF_BASE_MILLIS = 200L;
+
+    /**
+     * 自适应超时的下限（毫秒）
+     */
+    private static final long MIN_TIMEOUT_MILLIS = 1000L;
+
+    /**
+     * 触发对冲的延迟分位
+     */
+    private static final double HEDGE_QUANTILE = 0.95;
+
+    /**
+     * 对冲请求最多占上游调用量的比例
+     */
+    private static final double HEDGE_RATIO = 0.05;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    /**
+     * key: 数据源类型, value: 保护策略
+     */
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+
+    /**
+     * 所有数据源共享的对冲预算
+     */
+    private final RetryBudget hedgeBudget = new RetryBudget(HEDGE_RATIO, 10, 0);
+
+    /**
+     * 在保护下调用数据源
+     * 超时只结束等待，数据源内部的阻塞调用仍会在工作线程中执行完；
+     * 返回的结果被调用方提前结束时，取消进行中的调用且不再重试
+     *
+     * @param service 数据源服务
+     * @param batch 是否为批量调用，批量调用单独统计延迟且不做对冲
+     * @param call 发起一次调用
+     * @return 调用结果，熔断时以DataSourceUnavailableException失败
+     */
+    public <T> CompletableFuture<T> execute(PoolDataSourceService service, boolean batch,
+                                            Supplier<CompletableFuture<T>> call) {
+        Policy policy = policies.computeIfAbsent(service.getDataSourceType(), Policy::new);
+        policy.budget.onRequest();
+        hedgeBudget.onRequest();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Supplier<CompletableFuture<T>> guarded = batch ? call : () -> hedge(policy, call);
+        attempt(policy, batch ? policy.batchTimeout : policy.timeout, guarded, result, 1);
+        return result;
+    }
+
+    /**
+     * 判断数据源当前是否处于熔断状态
+     */
+    public boolean isOpen(PoolDataSourceService service) {
+        Policy policy = policies.get(service.getDataSourceType());
+        return policy != null && policy.breaker.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * 获取各数据源类型的保护状态
+     *
+     * @return key: 数据源类型, value: 状态
+     */
+    public Map<String, Map<String, Object>> getStatistics() {
+        long maxTimeout = maxTimeoutMillis();
+        Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+        policies.forEach((type, policy) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("state", policy.breaker.getState().name());
+            item.put("failureRate", policy.breaker.getFailureRate());
+            item.put("timeoutMs", policy.timeout.current(maxTimeout));
+            item.put("batchTimeoutMs", policy.batchTimeout.current(maxTimeout));
+            item.put("latencyMs", policy.timeout.getSmoothedLatency());
+            item.put("retryTokens", policy.budget.getTokens());
+            item.put("calls", policy.calls.get());
+            item.put("timeouts", policy.timeouts.get());
+            item.put("retries", policy.retries.get());
+            item.put("rejected", policy.rejected.get());
+            item.put("hedgeDelayMs", policy.latencies.percentile(HEDGE_QUANTILE));
+            item.put("hedges", policy.hedges.get());
+            item.put("hedgeWins", policy.hedgeWins.get());
+            statistics.put(type, item);
+        });
+        return statistics;
+    }
+
+    private <T> void attempt(Policy policy, AdaptiveTimeout timeout, Supplier<CompletableFuture<T>> call,
+                             CompletableFuture<T> result, int attempt) {
+        if (result.isDone()) {
+            // 调用方已放弃（如采集周期到期取消），不再发起
+            return;
+        }
+        if (!policy.breaker.tryAcquire(System.currentTimeMillis())) {
+            policy.rejected.incrementAndGet();
+            result.completeExceptionally(new DataSourceUnavailableException(policy.type));
+            return;
+        }
+
+        long timeoutMillis = timeout.current(maxTimeoutMillis());
+        long start = System.nanoTime();
+        policy.calls.incrementAndGet();
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> pending = future;
+        result.whenComplete((value, e) -> {
+            if (e != null) {
+                pending.cancel(true);
+            }
+        });
+
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, e) -> {
+            if (e == null) {
+                timeout.record((System.nanoTime() - start) / 1_000_000.0);
+                policy.breaker.onSuccess();
+                result.complete(value);
+                return;
+            }
+
+            if (result.isDone()) {
+                // 调用方取消导致的失败不计入熔断，但要归还半开状态的试探名额
+                policy.breaker.release();
+                return;
+            }
+            Throwable cause = unwrap(e);
+            if (cause instanceof BulkheadFullException) {
+                // 本地排队已满，与上游健康状况无关，不计入熔断也不重试，但要归还半开状态的试探名额
+                policy.breaker.release();
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (cause instanceof TimeoutException) {
+                policy.timeouts.incrementAndGet();
+                timeout.record(timeoutMillis);
+            }
+            policy.breaker.onFailure(System.currentTimeMillis());
+
+            if (attempt < MAX_ATTEMPTS && policy.budget.tryRetry()) {
+                policy.retries.incrementAndGet();
+                // 指数退避加全抖动，避免多个号池同时重试
+                long ceiling = BACKOFF_BASE_MILLIS << (attempt - 1);
+                long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                log.debug("数据源调用失败，{}ms后重试, dataSourceType: {}, 错误: {}", delay, policy.type, cause.toString());
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(policy, timeout, call, result, attempt + 1));
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * 发起调用，超过p95未返回时在预算内发出对冲请求
+     * 任一请求成功即采用其结果并取消另一个；两个都失败才失败；结果被提前结束（如超时）时两个都取消
+     */
+    private <T> CompletableFuture<T> hedge(Policy policy, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> primary = timed(policy, call);
+        long delay = policy.latencies.percentile(HEDGE_QUANTILE);
+        if (delay < 0 || !appConfig.getCollection().isHedgingEnabled()) {
+            return primary;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> hedgeRef = new AtomicReference<>();
+
+        primary.whenComplete((value, e) -> {
+            CompletableFuture<T> hedged = hedgeRef.get();
+            if (e == null) {
+                if (result.complete(value) && hedged != null) {
+                    hedged.cancel(true);
+                }
+            } else if (hedged == null || hedged.isDone()) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            if (primary.isDone() || result.isDone() || !hedgeBudget.tryRetry()) {
+                return;
+            }
+            policy.hedges.incrementAndGet();
+            CompletableFuture<T> hedged = timed(policy, call);
+            hedgeRef.set(hedged);
+            hedged.whenComplete((value, e) -> {
+                if (e == null) {
+                    if (result.complete(value)) {
+                        policy.hedgeWins.incrementAndGet();
+                        primary.cancel(true);
+                    }
+                } else if (primary.isDone()) {
+                    result.completeExceptionally(e);
+                }
+            });
+            if (result.isDone()) {
+                hedged.cancel(true);
+            }
+        });
+
+        result.whenComplete((value, e) -> {
+            if (e != null) {
+                primary.cancel(true);
+                CompletableFuture<T> hedged = hedgeRef.get();
+                if (hedged != null) {
+                    hedged.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 发起一次请求并记录其成功时的延迟
+     */
+    private <T> CompletableFuture<T> timed(Policy policy, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                policy.latencies.record((System.nanoTime() - start) / 1_000_000);
+            }
+        });
+        return future;
+    }
+
+    private long maxTimeoutMillis() {
+        return Math.max(MIN_TIMEOUT_MILLIS, appConfig.getCollection().getTimeout() * 1000L);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * 单个数据源类型的保护策略
+     */
+    private static final class Policy {
+
+        private final String type;
+        private final CircuitBreaker breaker = new CircuitBreaker();
+        private final AdaptiveTimeout timeout = new AdaptiveTimeout(MIN_TIMEOUT_MILLIS);
+        private final AdaptiveTimeout batchTimeout = new AdaptiveTimeout(MIN_TIMEOUT_MILLIS);
+        private final RetryBudget budget = new RetryBudget();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final LatencyWindow latencies = new LatencyWindow();
+        private final AtomicLong hedges = new AtomicLong();
+        private final AtomicLong hedgeWins = new AtomicLong();
+
+        Policy(String type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.zjc.datasource.resilience;
+
+/**
+ * 数据源熔断打开时快速失败抛出的异常
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public class DataSourceUnavailableException extends RuntimeException {
+
+    public DataSourceUnavailableException(String dataSourceType) {
+        super("数据源已熔断: " + dataSourceType);
+    }
+}
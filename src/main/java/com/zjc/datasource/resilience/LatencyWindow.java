@@ -0,0 +1,45 @@
+package com.zjc.datasource.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 最近若干次调用延迟的滑动窗口，用于估计延迟分位数
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class LatencyWindow {
+
+    private static final int SIZE = 100;
+
+    /**
+     * 样本少于该数量时不给出分位数
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final long[] samples = new long[SIZE];
+    private int count;
+    private int next;
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % SIZE;
+        count = Math.min(SIZE, count + 1);
+    }
+
+    /**
+     * 获取延迟分位数
+     *
+     * @param quantile 分位，0到1之间
+     * @return 延迟（毫秒），样本不足时返回-1
+     */
+    public synchronized long percentile(double quantile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
@@ -0,0 +1,45 @@
+package com.zjc.datasource.resilience;
+
+/**
+ * 重试预算
+ * 每次请求存入ratio个令牌，重试一次消耗一个，重试量最多约为请求量的ratio倍；
+ * 上游整体故障时重试很快耗尽预算，不会成倍放大请求。对冲请求也使用同样的预算控制额外负载
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    /**
+     * 默认重试预算，初始令牌保证请求量很小时也能重试
+     */
+    public RetryBudget() {
+        this(0.1, 10, 3);
+    }
+
+    public RetryBudget(double ratio, double maxTokens, double initialTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = initialTokens;
+    }
+
+    public synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+}
@@ -56,6 +56,11 @@ public class PoolDTO {
      */
     private String displayStrategy;
     
+    /**
+     * 采集优先级
+     */
+    private String priority;
+    
     /**
      * 是否启用
      */
@@ -0,0 +1,77 @@
+package com.zjc.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * 号池迷你趋势图数据传输对象
+ * 列式结构：所有号池共享同一时间轴，每个号池只携带整型数组
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class PoolSparklineDTO {
+
+    /**
+     * 时间轴起点（第一个桶的开始时间戳）
+     */
+    private Long startTime;
+
+    /**
+     * 桶宽度（毫秒）
+     */
+    private Long step;
+
+    /**
+     * 采样点数
+     */
+    private Integer points;
+
+    /**
+     * 共享时间轴，每个桶的开始时间戳
+     */
+    private long[] timestamps;
+
+    /**
+     * 压力值缩放倍数，pressure数组中的值除以该倍数即为百分比
+     */
+    private Integer pressureScale;
+
+    /**
+     * 各号池的序列
+     */
+    private List<Series> series;
+
+    @Data
+    public static class Series {
+
+        /**
+         * 号池ID
+         */
+        private Long poolId;
+
+        /**
+         * 号池名称
+         */
+        private String poolName;
+
+        /**
+         * 第一个有数据的桶下标，之前的值没有意义
+         */
+        private Integer offset;
+
+        /**
+         * 有效数量
+         */
+        private int[] validCount;
+
+        /**
+         * 压力值（已按pressureScale放大）
+         */
+        private int[] pressure;
+    }
+}
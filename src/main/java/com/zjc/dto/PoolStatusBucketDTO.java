@@ -0,0 +1,51 @@
+package com.zjc.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 号池状态时间桶数据传输对象
+ * 一个时间桶内多条样本的平均值
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class PoolStatusBucketDTO {
+
+    /**
+     * 号池ID
+     */
+    private Long poolId;
+
+    /**
+     * 时间桶开始时间戳
+     */
+    private Long bucketTime;
+
+    /**
+     * 有效数量
+     */
+    private Integer validCount;
+
+    /**
+     * 无效数量
+     */
+    private Integer invalidCount;
+
+    /**
+     * 冷却中数量
+     */
+    private Integer coolingCount;
+
+    /**
+     * 总数量
+     */
+    private Integer totalCount;
+
+    /**
+     * 号池压力(百分比)
+     */
+    private Double pressure;
+}
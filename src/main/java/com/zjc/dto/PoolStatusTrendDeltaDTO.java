@@ -0,0 +1,49 @@
+package com.zjc.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * 号池状态增量趋势数据传输对象
+ * 用于图表自动刷新时只拉取游标之后的新样本
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class PoolStatusTrendDeltaDTO {
+
+    /**
+     * 号池ID
+     */
+    private Long poolId;
+
+    /**
+     * 请求的游标（记录时间戳，不含）
+     */
+    private Long after;
+
+    /**
+     * 新的游标，即本次返回的最后一条记录时间戳
+     * 没有新数据时与请求游标相同
+     */
+    private Long cursor;
+
+    /**
+     * 游标之后的新样本（按记录时间升序）
+     */
+    private List<PoolStatusDTO> records;
+
+    /**
+     * 是否还有未返回的新样本（超过单次返回上限）
+     */
+    private Boolean hasMore;
+
+    /**
+     * 号池最新状态
+     */
+    private PoolStatusDTO latest;
+}
@@ -0,0 +1,87 @@
+package com.zjc.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * 多号池对齐趋势矩阵数据传输对象
+ * 所有号池共享同一时间网格，每个号池一行，每个时间桶一列
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class PoolTrendMatrixDTO {
+
+    /**
+     * 时间网格起点（第一个桶的开始时间戳）
+     */
+    private Long startTime;
+
+    /**
+     * 桶宽度（毫秒），可能因点数上限而大于请求值
+     */
+    private Long step;
+
+    /**
+     * 每个号池的点数
+     */
+    private Integer points;
+
+    /**
+     * 共享时间轴，每个桶的开始时间戳
+     */
+    private long[] timestamps;
+
+    /**
+     * 各号池的序列
+     */
+    private List<Series> series;
+
+    @Data
+    public static class Series {
+
+        /**
+         * 号池ID
+         */
+        private Long poolId;
+
+        /**
+         * 号池名称
+         */
+        private String poolName;
+
+        /**
+         * 第一个有数据的桶下标，之前的值没有意义
+         */
+        private Integer offset;
+
+        /**
+         * 有效数量
+         */
+        private int[] validCount;
+
+        /**
+         * 无效数量
+         */
+        private int[] invalidCount;
+
+        /**
+         * 冷却中数量
+         */
+        private int[] coolingCount;
+
+        /**
+         * 总数量
+         */
+        private int[] totalCount;
+
+        /**
+         * 压力值(百分比)
+         */
+        private double[] pressure;
+    }
+}
@@ -43,6 +43,16 @@ public class VirtualPoolDTO {
      */
     private List<String> poolNames;
     
+    /**
+     * 聚合的下级虚拟池ID列表
+     */
+    private List<Long> virtualPoolIds;
+    
+    /**
+     * 聚合的下级虚拟池名称列表
+     */
+    private List<String> virtualPoolNames;
+    
     /**
      * 聚合策略
      */
@@ -53,6 +63,11 @@ public class VirtualPoolDTO {
      */
     private Map<String, Object> weightConfig;
     
+    /**
+     * 自定义指标公式（key: 指标名称, value: 公式）
+     */
+    private Map<String, Object> metricFormulas;
+    
     /**
      * 是否启用
      */
@@ -88,6 +103,11 @@ public class VirtualPoolDTO {
      */
     private BigDecimal aggregatedPressure;
     
+    /**
+     * 自定义指标的计算结果
+     */
+    private Map<String, Double> aggregatedMetrics;
+    
     /**
      * 创建时间
      */
@@ -59,6 +59,12 @@ public class Pool extends BaseEntity {
     @TableField("display_strategy")
     private String displayStrategy;
 
+    /**
+     * 采集优先级 (critical-关键, high-高, normal-普通, low-低)
+     */
+    @TableField("priority")
+    private String priority;
+
     /**
      * 是否启用
      */
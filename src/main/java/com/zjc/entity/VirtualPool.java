@@ -35,7 +35,13 @@ public class VirtualPool extends BaseEntity {
     private String poolIds;
 
     /**
-     * 聚合策略 (sum-求和, average-平均值, weighted-加权平均)
+     * 聚合的下级虚拟池ID列表（JSON格式）
+     */
+    @TableField("virtual_pool_ids")
+    private String virtualPoolIds;
+
+    /**
+     * 聚合策略 (sum-求和, average-平均值, weighted-加权平均, min, max, median, p95)
      */
     @TableField("aggregate_strategy")
     private String aggregateStrategy;
@@ -46,6 +52,12 @@ public class VirtualPool extends BaseEntity {
     @TableField("weight_config")
     private String weightConfig;
 
+    /**
+     * 自定义指标公式（JSON格式，key: 指标名称, value: 公式）
+     */
+    @TableField("metric_formulas")
+    private String metricFormulas;
+
     /**
      * 是否启用
      */
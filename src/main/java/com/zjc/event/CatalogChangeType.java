@@ -0,0 +1,20 @@
+package com.zjc.event;
+
+/**
+ * 配置变更类型
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public enum CatalogChangeType {
+
+    /**
+     * 新建或修改，需要重新加载记录
+     */
+    SAVED,
+
+    /**
+     * 删除
+     */
+    DELETED
+}
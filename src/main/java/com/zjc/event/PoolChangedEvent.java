@@ -0,0 +1,52 @@
+package com.zjc.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 号池配置变更事件
+ * 由服务层在增删改后发布，事务提交后由内存目录等监听方处理；
+ * 其他进程修改号池后由缓存一致性检查发布外部事件，外部事件不再向其他进程发布变更信号
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public class PoolChangedEvent {
+
+    private final List<Long> ids;
+    private final CatalogChangeType type;
+    private final boolean external;
+
+    public PoolChangedEvent(List<Long> ids, CatalogChangeType type) {
+        this(ids, type, false);
+    }
+
+    public PoolChangedEvent(List<Long> ids, CatalogChangeType type, boolean external) {
+        this.ids = ids != null ? ids : Collections.emptyList();
+        this.type = type;
+        this.external = external;
+    }
+
+    public static PoolChangedEvent saved(Long id) {
+        return new PoolChangedEvent(Collections.singletonList(id), CatalogChangeType.SAVED);
+    }
+
+    public static PoolChangedEvent deleted(List<Long> ids) {
+        return new PoolChangedEvent(ids, CatalogChangeType.DELETED);
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public CatalogChangeType getType() {
+        return type;
+    }
+
+    /**
+     * 是否为其他进程造成的变更
+     */
+    public boolean isExternal() {
+        return external;
+    }
+}
@@ -0,0 +1,42 @@
+package com.zjc.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 虚拟聚合池配置变更事件
+ * 由服务层在增删改后发布，事务提交后由内存目录等监听方处理
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public class VirtualPoolChangedEvent {
+
+    private final List<Long> ids;
+    private final CatalogChangeType type;
+
+    public VirtualPoolChangedEvent(List<Long> ids, CatalogChangeType type) {
+        this.ids = ids != null ? ids : Collections.emptyList();
+        this.type = type;
+    }
+
+    public static VirtualPoolChangedEvent saved(Long id) {
+        return new VirtualPoolChangedEvent(Collections.singletonList(id), CatalogChangeType.SAVED);
+    }
+
+    public static VirtualPoolChangedEvent saved(List<Long> ids) {
+        return new VirtualPoolChangedEvent(ids, CatalogChangeType.SAVED);
+    }
+
+    public static VirtualPoolChangedEvent deleted(List<Long> ids) {
+        return new VirtualPoolChangedEvent(ids, CatalogChangeType.DELETED);
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public CatalogChangeType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,450 @@
+package com.zjc.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 虚拟池指标公式编译器
+ * 递归下降解析表达式，解析的同时直接组合出lambda树，常量子表达式在编译期折叠。
+ * 变量名和成员号池ID都在编译期解析为指标枚举和槽位，求值开销与手写代码相当
+ *
+ * <p>语法：</p>
+ * <pre>
+ * expr    := term (('+' | '-') term)*
+ * term    := unary (('*' | '/' | '%') unary)*
+ * unary   := '-' unary | primary
+ * primary := number | metric | '(' expr ')'
+ *          | aggFunc '(' metric [ 'of' poolId (',' poolId)* ] ')'
+ *          | func '(' expr (',' expr)* ')'
+ * metric  := valid | invalid | cooling | total | pressure | poolCount
+ * aggFunc := sum | avg | min | max | count
+ * func    := min | max | abs | round
+ * </pre>
+ * 单独的指标名表示虚拟池的聚合值；sum(valid of 1,2)表示号池1、2的valid之和，省略of时对全部成员计算
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class FormulaCompiler {
+
+    /**
+     * 表达式最大长度
+     */
+    public static final int MAX_EXPRESSION_LENGTH = 1000;
+
+    /**
+     * 最大嵌套深度，避免恶意输入导致栈溢出
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private final String expression;
+    private final List<Token> tokens;
+    private final Map<Long, Integer> poolSlots;
+    private final int memberCount;
+    private int position;
+    private int depth;
+
+    private FormulaCompiler(String expression, Map<Long, Integer> poolSlots, int memberCount) {
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+        this.poolSlots = poolSlots;
+        this.memberCount = memberCount;
+    }
+
+    /**
+     * 编译公式
+     *
+     * @param expression 公式文本
+     * @param poolSlots 成员号池ID到槽位的映射
+     * @param memberCount 成员槽位总数（包括下级虚拟池），省略of时对全部槽位计算
+     * @return 编译后的公式
+     * @throws IllegalArgumentException 公式有语法错误或引用了不存在的成员
+     */
+    public static MetricFormula compile(String expression, Map<Long, Integer> poolSlots, int memberCount) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("公式不能为空");
+        }
+        if (expression.length() > MAX_EXPRESSION_LENGTH) {
+            throw new IllegalArgumentException("公式长度不能超过" + MAX_EXPRESSION_LENGTH + "个字符");
+        }
+
+        FormulaCompiler compiler = new FormulaCompiler(expression, poolSlots, memberCount);
+        Node node = compiler.parseExpression();
+        if (compiler.peek().type != TokenType.END) {
+            throw compiler.error("多余的内容 '" + compiler.peek().text + "'");
+        }
+        return node.formula;
+    }
+
+    private Node parseExpression() {
+        enter();
+        Node left = parseTerm();
+        while (peek().isSymbol('+') || peek().isSymbol('-')) {
+            char op = next().text.charAt(0);
+            Node right = parseTerm();
+            left = op == '+' ? binary(left, right, Double::sum) : binary(left, right, (a, b) -> a - b);
+        }
+        depth--;
+        return left;
+    }
+
+    private Node parseTerm() {
+        Node left = parseUnary();
+        while (peek().isSymbol('*') || peek().isSymbol('/') || peek().isSymbol('%')) {
+            char op = next().text.charAt(0);
+            Node right = parseUnary();
+            if (op == '*') {
+                left = binary(left, right, (a, b) -> a * b);
+            } else if (op == '/') {
+                left = binary(left, right, (a, b) -> a / b);
+            } else {
+                left = binary(left, right, (a, b) -> a % b);
+            }
+        }
+        return left;
+    }
+
+    private Node parseUnary() {
+        if (peek().isSymbol('-')) {
+            next();
+            enter();
+            Node operand = parseUnary();
+            depth--;
+            return unary(operand, a -> -a);
+        }
+        return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+                return Node.constant(Double.parseDouble(token.text));
+            case SYMBOL:
+                if (token.isSymbol('(')) {
+                    Node inner = parseExpression();
+                    expect(')');
+                    return inner;
+                }
+                throw error(token, "不应出现 '" + token.text + "'");
+            case IDENT:
+                if (peek().isSymbol('(')) {
+                    next();
+                    return parseFunction(token);
+                }
+                FormulaMetric metric = metricOf(token);
+                return new Node(context -> context.aggregate(metric));
+            default:
+                throw error(token, "公式不完整");
+        }
+    }
+
+    private Node parseFunction(Token name) {
+        String function = name.text;
+        switch (function) {
+            case "sum":
+            case "avg":
+            case "count":
+                return parseMemberAggregate(function);
+            case "min":
+            case "max":
+                if (isMemberAggregate()) {
+                    return parseMemberAggregate(function);
+                }
+                List<Node> args = parseArguments();
+                DoubleBinaryOperator op = "min".equals(function) ? Math::min : Math::max;
+                Node result = args.get(0);
+                for (int i = 1; i < args.size(); i++) {
+                    result = binary(result, args.get(i), op);
+                }
+                return result;
+            case "abs":
+                return unary(parseSingleArgument(function), Math::abs);
+            case "round":
+                return unary(parseSingleArgument(function), a -> (double) Math.round(a));
+            default:
+                throw error(name, "不支持的函数 '" + function + "'");
+        }
+    }
+
+    /**
+     * 按参数判断min、max是否为成员聚合：参数是带of的指标，或单独一个可按成员取值的指标；
+     * 其他情况（如max(pressure)、min(valid, 10)）按普通函数对表达式求值
+     */
+    private boolean isMemberAggregate() {
+        Token first = peek(0);
+        Token second = peek(1);
+        FormulaMetric metric = first.type == TokenType.IDENT ? FormulaMetric.of(first.text) : null;
+        if (metric == null) {
+            return false;
+        }
+        return second.isIdent("of") || (second.isSymbol(')') && metric.isMemberMetric());
+    }
+
+    private Node parseMemberAggregate(String function) {
+        Token metricToken = next();
+        if (metricToken.type != TokenType.IDENT) {
+            throw error(metricToken, function + "的参数必须是指标名");
+        }
+        FormulaMetric metric = metricOf(metricToken);
+        if (!metric.isMemberMetric()) {
+            throw error(metricToken, "指标 '" + metric.getName() + "' 不支持按成员计算");
+        }
+
+        int[] slots;
+        if (peek().isIdent("of")) {
+            next();
+            List<Integer> slotList = new ArrayList<>();
+            while (true) {
+                Token idToken = next();
+                if (idToken.type != TokenType.NUMBER || idToken.text.indexOf('.') >= 0) {
+                    throw error(idToken, "of后面必须是号池ID");
+                }
+                Integer slot;
+                try {
+                    slot = poolSlots.get(Long.valueOf(idToken.text));
+                } catch (NumberFormatException e) {
+                    slot = null;
+                }
+                if (slot == null) {
+                    throw error(idToken, "号池不在聚合列表中: " + idToken.text);
+                }
+                slotList.add(slot);
+                if (!peek().isSymbol(',')) {
+                    break;
+                }
+                next();
+            }
+            slots = slotList.stream().mapToInt(Integer::intValue).toArray();
+        } else {
+            slots = new int[memberCount];
+            for (int i = 0; i < memberCount; i++) {
+                slots[i] = i;
+            }
+        }
+        expect(')');
+
+        switch (function) {
+            case "sum":
+                return new Node(context -> {
+                    double sum = 0;
+                    for (int slot : slots) {
+                        if (context.hasMember(slot)) {
+                            sum += context.member(slot, metric);
+                        }
+                    }
+                    return sum;
+                });
+            case "avg":
+                return new Node(context -> {
+                    double sum = 0;
+                    int count = 0;
+                    for (int slot : slots) {
+                        if (context.hasMember(slot)) {
+                            sum += context.member(slot, metric);
+                            count++;
+                        }
+                    }
+                    return count > 0 ? sum / count : Double.NaN;
+                });
+            case "count":
+                return new Node(context -> {
+                    int count = 0;
+                    for (int slot : slots) {
+                        if (context.hasMember(slot)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                });
+            case "min":
+                return new Node(context -> {
+                    double min = Double.NaN;
+                    for (int slot : slots) {
+                        if (context.hasMember(slot)) {
+                            double value = context.member(slot, metric);
+                            min = Double.isNaN(min) ? value : Math.min(min, value);
+                        }
+                    }
+                    return min;
+                });
+            default:
+                return new Node(context -> {
+                    double max = Double.NaN;
+                    for (int slot : slots) {
+                        if (context.hasMember(slot)) {
+                            double value = context.member(slot, metric);
+                            max = Double.isNaN(max) ? value : Math.max(max, value);
+                        }
+                    }
+                    return max;
+                });
+        }
+    }
+
+    private List<Node> parseArguments() {
+        List<Node> args = new ArrayList<>();
+        args.add(parseExpression());
+        while (peek().isSymbol(',')) {
+            next();
+            args.add(parseExpression());
+        }
+        expect(')');
+        return args;
+    }
+
+    private Node parseSingleArgument(String function) {
+        List<Node> args = parseArguments();
+        if (args.size() != 1) {
+            throw error(function + "只接受一个参数");
+        }
+        return args.get(0);
+    }
+
+    private FormulaMetric metricOf(Token token) {
+        FormulaMetric metric = FormulaMetric.of(token.text);
+        if (metric == null) {
+            throw error(token, "未知的指标 '" + token.text + "'");
+        }
+        return metric;
+    }
+
+    private static Node binary(Node left, Node right, DoubleBinaryOperator op) {
+        if (left.constant && right.constant) {
+            return Node.constant(op.applyAsDouble(left.value, right.value));
+        }
+        MetricFormula l = left.formula;
+        MetricFormula r = right.formula;
+        return new Node(context -> op.applyAsDouble(l.evaluate(context), r.evaluate(context)));
+    }
+
+    private static Node unary(Node operand, DoubleUnaryOperator op) {
+        if (operand.constant) {
+            return Node.constant(op.applyAsDouble(operand.value));
+        }
+        MetricFormula f = operand.formula;
+        return new Node(context -> op.applyAsDouble(f.evaluate(context)));
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("公式嵌套层数过多");
+        }
+    }
+
+    private void expect(char symbol) {
+        Token token = next();
+        if (!token.isSymbol(symbol)) {
+            throw error(token, "缺少 '" + symbol + "'");
+        }
+    }
+
+    private Token peek() {
+        return peek(0);
+    }
+
+    private Token peek(int offset) {
+        return tokens.get(Math.min(position + offset, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (position < tokens.size() - 1) {
+            position++;
+        }
+        return token;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return error(peek(), message);
+    }
+
+    private IllegalArgumentException error(Token token, String message) {
+        return new IllegalArgumentException("公式 '" + expression + "' 第" + (token.offset + 1) + "个字符处" + message);
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(expression.charAt(i + 1)))) {
+                int start = i;
+                boolean dot = false;
+                while (i < length && (Character.isDigit(expression.charAt(i)) || (!dot && expression.charAt(i) == '.'))) {
+                    dot |= expression.charAt(i) == '.';
+                    i++;
+                }
+                tokens.add(new Token(TokenType.NUMBER, expression.substring(start, i), start));
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.IDENT, expression.substring(start, i), start));
+            } else if ("+-*/%(),".indexOf(c) >= 0) {
+                tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c), i));
+                i++;
+            } else {
+                throw new IllegalArgumentException("公式 '" + expression + "' 第" + (i + 1) + "个字符处不支持的字符 '" + c + "'");
+            }
+        }
+        tokens.add(new Token(TokenType.END, "", length));
+        return tokens;
+    }
+
+    private enum TokenType {
+        NUMBER, IDENT, SYMBOL, END
+    }
+
+    private static final class Token {
+
+        private final TokenType type;
+        private final String text;
+        private final int offset;
+
+        Token(TokenType type, String text, int offset) {
+            this.type = type;
+            this.text = text;
+            this.offset = offset;
+        }
+
+        boolean isSymbol(char symbol) {
+            return type == TokenType.SYMBOL && text.charAt(0) == symbol;
+        }
+
+        boolean isIdent(String name) {
+            return type == TokenType.IDENT && text.equals(name);
+        }
+    }
+
+    /**
+     * 编译中间结果，记录是否为常量以便折叠
+     */
+    private static final class Node {
+
+        private final MetricFormula formula;
+        private final boolean constant;
+        private final double value;
+
+        Node(MetricFormula formula) {
+            this(formula, false, 0);
+        }
+
+        private Node(MetricFormula formula, boolean constant, double value) {
+            this.formula = formula;
+            this.constant = constant;
+            this.value = value;
+        }
+
+        static Node constant(double value) {
+            return new Node(context -> value, true, value);
+        }
+    }
+}
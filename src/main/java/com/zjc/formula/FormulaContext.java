@@ -0,0 +1,35 @@
+package com.zjc.formula;
+
+/**
+ * 公式求值时可访问的数据
+ * 成员按编译时解析出的槽位访问，调用方直接从自身的数组中取值
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public interface FormulaContext {
+
+    /**
+     * 获取虚拟池的聚合值
+     *
+     * @param metric 指标
+     * @return 指标值，没有数据时返回NaN
+     */
+    double aggregate(FormulaMetric metric);
+
+    /**
+     * 成员是否有数据
+     *
+     * @param slot 成员槽位
+     */
+    boolean hasMember(int slot);
+
+    /**
+     * 获取成员的指标值
+     *
+     * @param slot 成员槽位
+     * @param metric 指标，不会是只在聚合层面有意义的指标
+     * @return 指标值
+     */
+    double member(int slot, FormulaMetric metric);
+}
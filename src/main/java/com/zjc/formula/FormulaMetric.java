@@ -0,0 +1,57 @@
+package com.zjc.formula;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 公式中可以引用的指标
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public enum FormulaMetric {
+
+    VALID("valid", true),
+    INVALID("invalid", true),
+    COOLING("cooling", true),
+    TOTAL("total", true),
+    PRESSURE("pressure", false),
+    POOL_COUNT("poolCount", false);
+
+    private static final Map<String, FormulaMetric> BY_NAME = new HashMap<>();
+
+    static {
+        for (FormulaMetric metric : values()) {
+            BY_NAME.put(metric.name, metric);
+        }
+    }
+
+    private final String name;
+
+    /**
+     * 是否可以按成员取值
+     */
+    private final boolean memberMetric;
+
+    FormulaMetric(String name, boolean memberMetric) {
+        this.name = name;
+        this.memberMetric = memberMetric;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isMemberMetric() {
+        return memberMetric;
+    }
+
+    /**
+     * 按公式中的名称查找指标
+     *
+     * @return 指标，名称不存在时返回null
+     */
+    public static FormulaMetric of(String name) {
+        return BY_NAME.get(name);
+    }
+}
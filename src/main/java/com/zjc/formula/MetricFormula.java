@@ -0,0 +1,20 @@
+package com.zjc.formula;
+
+/**
+ * 编译后的虚拟池指标公式
+ * 由FormulaCompiler把表达式一次性编译成lambda树，求值时不再解析文本也不查找变量名
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@FunctionalInterface
+public interface MetricFormula {
+
+    /**
+     * 计算公式的值
+     *
+     * @param context 当前聚合值和成员值
+     * @return 计算结果，除以0等情况返回NaN或无穷大
+     */
+    double evaluate(FormulaContext context);
+}
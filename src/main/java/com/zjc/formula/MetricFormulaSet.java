@@ -0,0 +1,82 @@
+package com.zjc.formula;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 虚拟池的一组自定义指标公式
+ * 随虚拟池配置一起编译并缓存，配置变化时整体重建
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class MetricFormulaSet {
+
+    /**
+     * 没有配置公式时使用的空集合
+     */
+    public static final MetricFormulaSet EMPTY = new MetricFormulaSet(Collections.emptyMap());
+
+    /**
+     * 指标名称格式
+     */
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]{0,63}");
+
+    private final Map<String, MetricFormula> formulas;
+
+    private MetricFormulaSet(Map<String, MetricFormula> formulas) {
+        this.formulas = formulas;
+    }
+
+    /**
+     * 编译metric_formulas配置
+     *
+     * @param config 指标名称到公式文本的映射
+     * @param poolSlots 成员号池ID到槽位的映射
+     * @param memberCount 成员槽位总数
+     * @return 编译后的公式集合
+     * @throws IllegalArgumentException 指标名称或公式不合法
+     */
+    public static MetricFormulaSet compile(Map<String, ?> config, Map<Long, Integer> poolSlots, int memberCount) {
+        if (config == null || config.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, MetricFormula> formulas = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> entry : config.entrySet()) {
+            String name = entry.getKey();
+            if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+                throw new IllegalArgumentException("指标名称只能包含字母、数字和下划线，且不能以数字开头: " + name);
+            }
+            if (!(entry.getValue() instanceof String)) {
+                throw new IllegalArgumentException("指标公式必须是字符串: " + name);
+            }
+            formulas.put(name, FormulaCompiler.compile((String) entry.getValue(), poolSlots, memberCount));
+        }
+        return new MetricFormulaSet(formulas);
+    }
+
+    public boolean isEmpty() {
+        return formulas.isEmpty();
+    }
+
+    /**
+     * 计算所有指标
+     *
+     * @return 指标名称到结果的映射，结果不是有限数值（如除以0）时为null
+     */
+    public Map<String, Double> evaluate(FormulaContext context) {
+        if (formulas.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<String, MetricFormula> entry : formulas.entrySet()) {
+            double value = entry.getValue().evaluate(context);
+            values.put(entry.getKey(), Double.isFinite(value) ? value : null);
+        }
+        return values;
+    }
+}
@@ -1,8 +1,8 @@
 package com.zjc.health;
 
+import com.zjc.cache.PoolCatalog;
 import com.zjc.datasource.DataSourceManager;
 import com.zjc.dto.PoolDTO;
-import com.zjc.service.PoolService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -25,7 +25,7 @@ import java.util.Map;
 public class PoolDataSourceHealthIndicator implements HealthIndicator {
 
     @Autowired
-    private PoolService poolService;
+    private PoolCatalog poolCatalog;
 
     @Autowired
     private DataSourceManager dataSourceManager;
@@ -34,7 +34,7 @@ public class PoolDataSourceHealthIndicator implements HealthIndicator {
     public Health health() {
         try {
             // 获取所有启用的号池
-            List<PoolDTO> pools = poolService.getEnabledPools();
+            List<PoolDTO> pools = poolCatalog.getEnabledPools();
             
             Map<String, Object> details = new HashMap<>();
             details.put("totalPools", pools.size());
@@ -47,7 +47,6 @@ public class PoolDataSourceHealthIndicator implements HealthIndicator {
             for (PoolDTO pool : pools) {
                 try {
                     String dataSourceClass = pool.getDataSourceClass();
-                    Map<String, Object> dataSourceConfig = pool.getDataSourceConfig();
                     
                     if (dataSourceClass == null || dataSourceClass.trim().isEmpty()) {
                         poolStatus.put(pool.getName(), "NO_DATASOURCE");
@@ -55,7 +54,7 @@ public class PoolDataSourceHealthIndicator implements HealthIndicator {
                         continue;
                     }
                     
-                    boolean connected = dataSourceManager.checkConnection(dataSourceClass, dataSourceConfig);
+                    boolean connected = dataSourceManager.checkConnection(pool);
                     
                     if (connected) {
                         poolStatus.put(pool.getName(), "HEALTHY");
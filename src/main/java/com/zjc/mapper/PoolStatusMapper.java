@@ -1,6 +1,7 @@
 package com.zjc.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.zjc.dto.PoolStatusBucketDTO;
 import com.zjc.entity.PoolStatus;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -77,4 +78,39 @@ public interface PoolStatusMapper extends BaseMapper<PoolStatus> {
             "WHERE ps.deleted = 0" +
             "</script>")
     List<PoolStatus> selectLatestByPoolIds(@Param("poolIds") List<Long> poolIds);
-}
\ No newline at end of file
+
+    /**
+     * 按时间桶获取各号池每个桶内的最后一条状态
+     * 利用SQLite在MAX聚合时返回对应行其他列的特性
+     *
+     * @param startTime 开始时间戳
+     * @param bucketMs 桶宽度（毫秒）
+     * @return 每个号池每个桶的最后一条状态
+     */
+    @Select("SELECT pool_id, MAX(record_time) AS record_time, valid_count, invalid_count, cooling_count, total_count, pressure " +
+            "FROM pool_status WHERE record_time >= #{startTime} AND deleted = 0 " +
+            "GROUP BY pool_id, record_time / #{bucketMs}")
+    List<PoolStatus> selectBucketLatest(@Param("startTime") Long startTime, @Param("bucketMs") Long bucketMs);
+
+    /**
+     * 按时间桶聚合指定号池的状态历史，桶内取平均值
+     *
+     * @param poolId 号池ID
+     * @param startTime 开始时间戳（含）
+     * @param endTime 结束时间戳（不含）
+     * @param bucketMs 桶宽度（毫秒），桶边界为其整数倍
+     * @return 按桶时间升序的聚合结果
+     */
+    @Select("SELECT pool_id, (record_time / #{bucketMs}) * #{bucketMs} AS bucket_time, " +
+            "CAST(ROUND(AVG(valid_count)) AS INTEGER) AS valid_count, " +
+            "CAST(ROUND(AVG(invalid_count)) AS INTEGER) AS invalid_count, " +
+            "CAST(ROUND(AVG(cooling_count)) AS INTEGER) AS cooling_count, " +
+            "CAST(ROUND(AVG(total_count)) AS INTEGER) AS total_count, " +
+            "AVG(pressure) AS pressure " +
+            "FROM pool_status WHERE pool_id = #{poolId} AND record_time >= #{startTime} AND record_time < #{endTime} AND deleted = 0 " +
+            "GROUP BY record_time / #{bucketMs} ORDER BY bucket_time ASC")
+    List<PoolStatusBucketDTO> selectBucketedHistory(@Param("poolId") Long poolId,
+                                                    @Param("startTime") Long startTime,
+                                                    @Param("endTime") Long endTime,
+                                                    @Param("bucketMs") Long bucketMs);
+}
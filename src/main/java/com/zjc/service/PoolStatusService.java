@@ -2,7 +2,10 @@ package com.zjc.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.zjc.dto.PoolSparklineDTO;
 import com.zjc.dto.PoolStatusDTO;
+import com.zjc.dto.PoolStatusTrendDeltaDTO;
+import com.zjc.dto.PoolTrendMatrixDTO;
 import com.zjc.entity.PoolStatus;
 
 import java.util.List;
@@ -77,7 +80,35 @@ public interface PoolStatusService extends IService<PoolStatus> {
      * @return 趋势数据
      */
     List<PoolStatusDTO> getPoolStatusTrend(Long poolId, Long startTime, Long endTime, Integer interval);
+
+    /**
+     * 增量获取号池状态趋势数据
+     * 只返回记录时间晚于游标的原始样本，不做间隔采样，并附带号池最新状态
+     *
+     * @param poolId 号池ID
+     * @param after 游标记录时间戳（不含）
+     * @return 增量趋势数据
+     */
+    PoolStatusTrendDeltaDTO getPoolStatusTrendSince(Long poolId, Long after);
+
+    /**
+     * 获取多个号池在同一时间网格上对齐的趋势矩阵
+     * 
+     * @param poolIds 号池ID列表
+     * @param startTime 开始时间戳，为空时取结束时间前24小时
+     * @param endTime 结束时间戳，为空时取当前时间
+     * @param bucketSeconds 桶宽度(秒)，总点数超过上限时自动放大
+     * @return 对齐的趋势矩阵
+     */
+    PoolTrendMatrixDTO getAlignedPoolStatusTrend(List<Long> poolIds, Long startTime, Long endTime, Integer bucketSeconds);
     
+    /**
+     * 获取所有公开号池的迷你趋势图数据
+     * 
+     * @return 列式迷你趋势图数据
+     */
+    PoolSparklineDTO getPublicPoolSparklines();
+
     /**
      * 获取号池状态统计信息
      * 
@@ -195,4 +195,12 @@ public interface VirtualPoolService extends IService<VirtualPool> {
      * @return 包含该号池的虚拟池列表
      */
     List<VirtualPoolDTO> getVirtualPoolsContainingPool(Long poolId);
+    
+    /**
+     * 获取多个虚拟聚合池的成员号池交集和并集
+     * 
+     * @param ids 虚拟池ID列表
+     * @return intersection: 共同包含的号池ID, union: 包含的所有号池ID
+     */
+    Map<String, Object> getVirtualPoolMembership(List<Long> ids);
 }
\ No newline at end of file
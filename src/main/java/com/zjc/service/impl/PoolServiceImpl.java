@@ -4,12 +4,18 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.zjc.cache.PoolCatalog;
+import com.zjc.cache.PoolUpdateStatusLedger;
+import com.zjc.common.PoolPriority;
 import com.zjc.dto.PoolDTO;
 import com.zjc.entity.Pool;
+import com.zjc.event.PoolChangedEvent;
 import com.zjc.mapper.PoolMapper;
 import com.zjc.service.PoolService;
 import com.zjc.util.BeanUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -28,6 +34,15 @@ import java.util.stream.Collectors;
 @Service
 public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements PoolService {
 
+    @Autowired
+    private PoolCatalog poolCatalog;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PoolUpdateStatusLedger poolUpdateStatusLedger;
+
     @Override
     public Page<PoolDTO> getPoolPage(long current, long size, String name, String displayStrategy, Boolean enabled) {
         LambdaQueryWrapper<Pool> queryWrapper = new LambdaQueryWrapper<>();
@@ -67,8 +82,8 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
 
     @Override
     public PoolDTO getPoolById(Long id) {
-        Pool pool = this.getById(id);
-        return pool != null ? convertToDTO(pool) : null;
+        // 目录中的最后更新状态不随台账刷新更新，覆盖到副本上返回
+        return poolUpdateStatusLedger.overlay(poolCatalog.getPool(id));
     }
 
     @Override
@@ -79,6 +94,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
             throw new RuntimeException("号池名称已存在: " + poolDTO.getName());
         }
         
+        validatePriority(poolDTO.getPriority());
         Pool pool = convertToEntity(poolDTO);
         pool.setId(null); // 确保是新建
         
@@ -89,6 +105,9 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
         if (pool.getDisplayStrategy() == null) {
             pool.setDisplayStrategy("public");
         }
+        if (pool.getPriority() == null) {
+            pool.setPriority(PoolPriority.NORMAL.getCode());
+        }
         if (pool.getEnabled() == null) {
             pool.setEnabled(true);
         }
@@ -98,6 +117,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
             throw new RuntimeException("保存号池失败");
         }
         
+        eventPublisher.publishEvent(PoolChangedEvent.saved(pool.getId()));
         log.info("创建号池成功: {}", pool.getName());
         return convertToDTO(pool);
     }
@@ -115,6 +135,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
             throw new RuntimeException("号池名称已存在: " + poolDTO.getName());
         }
         
+        validatePriority(poolDTO.getPriority());
         Pool updatePool = convertToEntity(poolDTO);
         updatePool.setId(id);
         
@@ -126,6 +147,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
             throw new RuntimeException("更新号池失败");
         }
         
+        eventPublisher.publishEvent(PoolChangedEvent.saved(id));
         log.info("更新号池成功: {}", updatePool.getName());
         return convertToDTO(updatePool);
     }
@@ -140,6 +162,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
         
         boolean deleted = this.removeById(id);
         if (deleted) {
+            eventPublisher.publishEvent(PoolChangedEvent.deleted(java.util.Collections.singletonList(id)));
             log.info("删除号池成功: {}", pool.getName());
         }
         
@@ -155,6 +178,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
         
         boolean deleted = this.removeByIds(ids);
         if (deleted) {
+            eventPublisher.publishEvent(PoolChangedEvent.deleted(ids));
             log.info("批量删除号池成功，数量: {}", ids.size());
         }
         
@@ -170,6 +194,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
         
         boolean updated = this.update(updateWrapper);
         if (updated) {
+            eventPublisher.publishEvent(PoolChangedEvent.saved(id));
             log.info("切换号池启用状态成功: id={}, enabled={}", id, enabled);
         }
         
@@ -178,39 +203,22 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
 
     @Override
     public List<PoolDTO> getEnabledPools() {
-        LambdaQueryWrapper<Pool> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Pool::getEnabled, true)
-                   .orderByDesc(Pool::getCreateTime);
-        
-        List<Pool> pools = this.list(queryWrapper);
-        return pools.stream()
-                   .map(this::convertToDTO)
+        // 直接读取内存目录，配置JSON已在加载时解析
+        return poolCatalog.getEnabledPools().stream()
+                   .map(poolUpdateStatusLedger::overlay)
                    .collect(Collectors.toList());
     }
 
     @Override
     public List<PoolDTO> getPublicPools() {
-        LambdaQueryWrapper<Pool> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Pool::getDisplayStrategy, "public")
-                   .eq(Pool::getEnabled, true)
-                   .orderByDesc(Pool::getCreateTime);
-        
-        List<Pool> pools = this.list(queryWrapper);
-        return pools.stream()
-                   .map(this::convertToDTO)
-                   .collect(Collectors.toList());
+        return getPoolsByDisplayStrategy("public");
     }
 
     @Override
     public List<PoolDTO> getPoolsByDisplayStrategy(String displayStrategy) {
-        LambdaQueryWrapper<Pool> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Pool::getDisplayStrategy, displayStrategy)
-                   .eq(Pool::getEnabled, true)
-                   .orderByDesc(Pool::getCreateTime);
-        
-        List<Pool> pools = this.list(queryWrapper);
-        return pools.stream()
-                   .map(this::convertToDTO)
+        return poolCatalog.getEnabledPools().stream()
+                   .filter(pool -> displayStrategy != null && displayStrategy.equals(pool.getDisplayStrategy()))
+                   .map(poolUpdateStatusLedger::overlay)
                    .collect(Collectors.toList());
     }
 
@@ -227,20 +235,9 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void updatePoolLastStatus(Long id, String status, String errorMessage) {
-        LambdaUpdateWrapper<Pool> updateWrapper = new LambdaUpdateWrapper<>();
-        updateWrapper.eq(Pool::getId, id)
-                    .set(Pool::getLastUpdateTime, System.currentTimeMillis())
-                    .set(Pool::getLastUpdateStatus, status);
-        
-        if (StringUtils.hasText(errorMessage)) {
-            updateWrapper.set(Pool::getLastErrorMessage, errorMessage);
-        } else {
-            updateWrapper.set(Pool::getLastErrorMessage, null);
-        }
-        
-        this.update(updateWrapper);
+        // 先记入内存台账，与采集结果一起批量刷入数据库
+        poolUpdateStatusLedger.record(id, status, StringUtils.hasText(errorMessage) ? errorMessage : null);
     }
 
     /**
@@ -253,6 +250,7 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
         
         PoolDTO dto = new PoolDTO();
         org.springframework.beans.BeanUtils.copyProperties(pool, dto);
+        poolUpdateStatusLedger.applyTo(dto);
         
         // 转换JSON字段
         dto.setDataSourceConfig(BeanUtils.jsonToMap(pool.getDataSourceConfig()));
@@ -261,6 +259,15 @@ public class PoolServiceImpl extends ServiceImpl<PoolMapper, Pool> implements Po
         return dto;
     }
 
+    /**
+     * 校验采集优先级，未设置时允许
+     */
+    private void validatePriority(String priority) {
+        if (StringUtils.hasText(priority) && PoolPriority.find(priority) == null) {
+            throw new RuntimeException("号池优先级无效: " + priority);
+        }
+    }
+
     /**
      * 将DTO转换为实体
      */
@@ -3,16 +3,30 @@ package com.zjc.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.zjc.cache.ChangeSignal;
+import com.zjc.cache.LatestPoolStatusCache;
+import com.zjc.cache.PoolCatalog;
+import com.zjc.cache.PoolSparklineStore;
+import com.zjc.cache.VirtualPoolAggregateIndex;
+import com.zjc.config.AppConfig;
+import com.zjc.dto.PoolDTO;
+import com.zjc.dto.PoolSparklineDTO;
+import com.zjc.dto.PoolStatusBucketDTO;
 import com.zjc.dto.PoolStatusDTO;
+import com.zjc.dto.PoolStatusTrendDeltaDTO;
+import com.zjc.dto.PoolTrendMatrixDTO;
 import com.zjc.entity.Pool;
 import com.zjc.entity.PoolStatus;
-import com.zjc.mapper.PoolMapper;
 import com.zjc.mapper.PoolStatusMapper;
 import com.zjc.service.PoolStatusService;
+import com.zjc.trend.BucketedTrendReader;
+import com.zjc.trend.TimeGrid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -31,10 +45,37 @@ import java.util.stream.Collectors;
 @Service
 public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolStatus> implements PoolStatusService {
 
+    /**
+     * 增量趋势查询单次返回的最大记录数
+     */
+    private static final int MAX_TREND_DELTA_SIZE = 1000;
+
+    /**
+     * 对齐趋势矩阵的单元格总数上限（号池数 * 点数）
+     */
+    private static final int MAX_TREND_MATRIX_CELLS = 20000;
+
+    /**
+     * 按间隔采样的趋势最多返回的点数
+     */
+    private static final int MAX_TREND_POINTS = 2000;
+
     @Autowired
-    private PoolMapper poolMapper;
+    private PoolCatalog poolCatalog;
     @Autowired
     private PoolStatusMapper poolStatusMapper;
+    @Autowired
+    private PoolSparklineStore poolSparklineStore;
+    @Autowired
+    private BucketedTrendReader bucketedTrendReader;
+    @Autowired
+    private LatestPoolStatusCache latestPoolStatusCache;
+    @Autowired
+    private AppConfig appConfig;
+    @Autowired
+    private ChangeSignal changeSignal;
+    @Autowired
+    private VirtualPoolAggregateIndex virtualPoolAggregateIndex;
 
     @Override
     public Page<PoolStatusDTO> getPoolStatusPage(long current, long size, Long poolId, Long startTime, Long endTime) {
@@ -69,21 +110,14 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
 
     @Override
     public PoolStatusDTO getLatestPoolStatus(Long poolId) {
-        LambdaQueryWrapper<PoolStatus> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(PoolStatus::getPoolId, poolId)
-                   .orderByDesc(PoolStatus::getRecordTime)
-                   .last("LIMIT 1");
-        
-        PoolStatus status = this.getOne(queryWrapper);
-        return convertToDTO(status);
+        // 只变化写入时最后一条记录可能早于最近一次观测，以缓存中的观测值为准
+        return convertToDTO(latestPoolStatusCache.get(poolId));
     }
 
     @Override
     public List<PoolStatusDTO> getAllLatestPoolStatus() {
         // 获取所有启用的号池
-        LambdaQueryWrapper<Pool> poolQuery = new LambdaQueryWrapper<>();
-        poolQuery.eq(Pool::getEnabled, true);
-        List<Pool> pools = poolMapper.selectList(poolQuery);
+        List<PoolDTO> pools = poolCatalog.getEnabledPools();
         
         if (pools.isEmpty()) {
             return new ArrayList<>();
@@ -91,7 +125,7 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
         
         List<PoolStatusDTO> result = new ArrayList<>();
         
-        for (Pool pool : pools) {
+        for (PoolDTO pool : pools) {
             PoolStatusDTO latestStatus = getLatestPoolStatus(pool.getId());
             if (latestStatus != null) {
                 latestStatus.setPoolName(pool.getName());
@@ -114,10 +148,7 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
             PoolStatusDTO latestStatus = getLatestPoolStatus(poolId);
             if (latestStatus != null) {
                 // 获取号池名称
-                Pool pool = poolMapper.selectById(poolId);
-                if (pool != null) {
-                    latestStatus.setPoolName(pool.getName());
-                }
+                latestStatus.setPoolName(poolCatalog.getPoolName(poolId));
                 result.add(latestStatus);
             }
         }
@@ -145,11 +176,17 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
             status.setPressure(pressure);
         }
         
-        boolean saved = this.save(status);
-        if (!saved) {
-            throw new RuntimeException("保存号池状态失败");
+        // 只变化写入：与上一次入库的样本相同且未到心跳间隔时跳过写入
+        boolean persist = shouldPersist(status);
+        if (persist) {
+            if (!this.save(status)) {
+                throw new RuntimeException("保存号池状态失败");
+            }
+            changeSignal.mark(ChangeSignal.STATUS);
         }
         
+        afterCommit(() -> applyToCaches(status, persist));
+        
         return convertToDTO(status);
     }
 
@@ -182,14 +219,53 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
             }
         }
         
-        boolean saved = this.saveBatch(statusList);
+        List<PoolStatus> changed = statusList.stream()
+                .filter(this::shouldPersist)
+                .collect(Collectors.toList());
+        
+        boolean saved = changed.isEmpty() || this.saveBatch(changed);
         if (saved) {
-            log.info("批量保存号池状态成功，数量: {}", statusList.size());
+            if (!changed.isEmpty()) {
+                changeSignal.mark(ChangeSignal.STATUS);
+            }
+            Set<PoolStatus> persisted = Collections.newSetFromMap(new IdentityHashMap<>());
+            persisted.addAll(changed);
+            afterCommit(() -> {
+                for (PoolStatus status : statusList) {
+                    applyToCaches(status, persisted.contains(status));
+                }
+            });
+            log.info("批量保存号池状态成功，数量: {}, 写入: {}", statusList.size(), changed.size());
         }
         
         return saved;
     }
 
+    /**
+     * 用新样本更新最新状态缓存、迷你趋势图和虚拟池聚合索引
+     */
+    private void applyToCaches(PoolStatus status, boolean persisted) {
+        latestPoolStatusCache.observe(status, persisted);
+        poolSparklineStore.record(status.getPoolId(), status.getRecordTime(), status.getValidCount(), status.getPressure());
+        virtualPoolAggregateIndex.record(status);
+    }
+
+    /**
+     * 事务提交后再执行，写入回滚时内存缓存不会把样本记为已入库；不在事务中时立即执行
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     @Override
     public List<PoolStatusDTO> getPoolStatusTrend(Long poolId, Long startTime, Long endTime, Integer interval) {
         LambdaQueryWrapper<PoolStatus> queryWrapper = new LambdaQueryWrapper<>();
@@ -205,30 +281,148 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
         
         queryWrapper.orderByAsc(PoolStatus::getRecordTime);
         
-        List<PoolStatus> statusList = this.list(queryWrapper);
+        List<PoolStatus> statusList = carryForward(poolId, this.list(queryWrapper), startTime, endTime);
         
         // 如果没有指定间隔，直接返回所有数据
-        if (interval == null || interval <= 0) {
+        if (interval == null || interval <= 0 || statusList.isEmpty()) {
             return statusList.stream()
                     .map(this::convertToDTO)
                     .collect(Collectors.toList());
         }
         
-        // 按时间间隔采样数据
-        List<PoolStatus> sampledList = new ArrayList<>();
-        long intervalMs = interval * 1000L;
-        long lastSampleTime = 0;
-        
-        for (PoolStatus status : statusList) {
-            if (status.getRecordTime() - lastSampleTime >= intervalMs) {
-                sampledList.add(status);
-                lastSampleTime = status.getRecordTime();
+        // 按时间间隔采样：每个采样点取该时刻之前的最后一条记录，没有新记录的区间沿用前值
+        // 长时间范围配小间隔时按点数上限放大间隔（取整到秒），避免生成过多采样点
+        List<PoolStatusDTO> sampledList = new ArrayList<>();
+        long firstTime = statusList.get(0).getRecordTime();
+        long lastTime = statusList.get(statusList.size() - 1).getRecordTime();
+        // 首尾两端都有采样点，点数为间隔数加一
+        long minIntervalMs = -Math.floorDiv(-(lastTime - firstTime), (long) (MAX_TREND_POINTS - 1));
+        long intervalMs = Math.max(interval * 1000L, -Math.floorDiv(-minIntervalMs, 1000L) * 1000L);
+        int cursor = 0;
+        for (long time = firstTime; ; time = Math.min(time + intervalMs, lastTime)) {
+            while (cursor + 1 < statusList.size() && statusList.get(cursor + 1).getRecordTime() <= time) {
+                cursor++;
+            }
+            PoolStatusDTO sample = convertToDTO(statusList.get(cursor));
+            sample.setRecordTime(time);
+            sampledList.add(sample);
+            if (time >= lastTime) {
+                break;
             }
         }
         
-        return sampledList.stream()
+        return sampledList;
+    }
+
+    /**
+     * 补齐只变化写入造成的首尾空缺
+     * 查询起点之前的最后一条记录沿用到起点；最近一次观测晚于最后一条记录时追加到末尾
+     */
+    private List<PoolStatus> carryForward(Long poolId, List<PoolStatus> statusList, Long startTime, Long endTime) {
+        List<PoolStatus> result = new ArrayList<>(statusList.size() + 2);
+        
+        if (startTime != null && (statusList.isEmpty() || statusList.get(0).getRecordTime() > startTime)) {
+            PoolStatus seed = this.getOne(new LambdaQueryWrapper<PoolStatus>()
+                    .eq(PoolStatus::getPoolId, poolId)
+                    .lt(PoolStatus::getRecordTime, startTime)
+                    .orderByDesc(PoolStatus::getRecordTime)
+                    .last("LIMIT 1"));
+            if (seed != null) {
+                seed.setRecordTime(startTime);
+                result.add(seed);
+            }
+        }
+        result.addAll(statusList);
+        
+        PoolStatus latest = latestPoolStatusCache.get(poolId);
+        long lastTime = result.isEmpty() ? Long.MIN_VALUE : result.get(result.size() - 1).getRecordTime();
+        if (latest != null && latest.getRecordTime() > lastTime
+                && (startTime == null || latest.getRecordTime() >= startTime)
+                && (endTime == null || latest.getRecordTime() <= endTime)) {
+            result.add(latest);
+        }
+        return result;
+    }
+
+    @Override
+    public PoolStatusTrendDeltaDTO getPoolStatusTrendSince(Long poolId, Long after) {
+        LambdaQueryWrapper<PoolStatus> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(PoolStatus::getPoolId, poolId)
+                   .gt(PoolStatus::getRecordTime, after)
+                   .orderByAsc(PoolStatus::getRecordTime)
+                   // 多取一条用于判断是否还有剩余数据
+                   .last("LIMIT " + (MAX_TREND_DELTA_SIZE + 1));
+
+        List<PoolStatus> statusList = this.list(queryWrapper);
+
+        boolean hasMore = statusList.size() > MAX_TREND_DELTA_SIZE;
+        if (hasMore) {
+            statusList = statusList.subList(0, MAX_TREND_DELTA_SIZE);
+        }
+
+        List<PoolStatusDTO> records = statusList.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+
+        PoolStatusTrendDeltaDTO delta = new PoolStatusTrendDeltaDTO();
+        delta.setPoolId(poolId);
+        delta.setAfter(after);
+        delta.setRecords(records);
+        delta.setHasMore(hasMore);
+
+        if (records.isEmpty()) {
+            delta.setCursor(after);
+            delta.setLatest(getLatestPoolStatus(poolId));
+        } else {
+            PoolStatusDTO last = records.get(records.size() - 1);
+            delta.setCursor(last.getRecordTime());
+            // 没有剩余数据时，最后一条新样本就是最新状态，无需再查询
+            delta.setLatest(hasMore ? getLatestPoolStatus(poolId) : last);
+        }
+
+        return delta;
+    }
+
+    @Override
+    public PoolTrendMatrixDTO getAlignedPoolStatusTrend(List<Long> poolIds, Long startTime, Long endTime, Integer bucketSeconds) {
+        List<Long> distinctIds = poolIds.stream().distinct().collect(Collectors.toList());
+        
+        long end = endTime != null ? endTime : System.currentTimeMillis();
+        long start = startTime != null ? startTime : end - 24L * 60L * 60L * 1000L;
+        long stepMs = (bucketSeconds != null && bucketSeconds > 0 ? bucketSeconds : 300) * 1000L;
+        
+        // 点数上限按号池数量平摊，超过时自动放大桶宽度
+        TimeGrid grid = TimeGrid.of(start, end, stepMs, MAX_TREND_MATRIX_CELLS / distinctIds.size());
+        
+        List<Long> existingIds = distinctIds.stream()
+                .filter(poolId -> poolCatalog.getPoolName(poolId) != null)
+                .collect(Collectors.toList());
+        Map<Long, List<PoolStatusBucketDTO>> bucketsByPool = bucketedTrendReader.readAll(existingIds, grid);
+        
+        List<PoolTrendMatrixDTO.Series> series = new ArrayList<>(existingIds.size());
+        for (Long poolId : existingIds) {
+            PoolTrendMatrixDTO.Series row = toMatrixSeries(grid, bucketsByPool.get(poolId));
+            row.setPoolId(poolId);
+            row.setPoolName(poolCatalog.getPoolName(poolId));
+            series.add(row);
+        }
+        
+        PoolTrendMatrixDTO matrix = new PoolTrendMatrixDTO();
+        matrix.setStartTime(grid.getStart());
+        matrix.setStep(grid.getStep());
+        matrix.setPoints(grid.getPoints());
+        matrix.setTimestamps(grid.timestamps());
+        matrix.setSeries(series);
+        return matrix;
+    }
+
+    @Override
+    public PoolSparklineDTO getPublicPoolSparklines() {
+        List<Pool> pools = poolCatalog.getPoolEntities().stream()
+                .filter(pool -> Boolean.TRUE.equals(pool.getEnabled()) && "public".equals(pool.getDisplayStrategy()))
+                .collect(Collectors.toList());
+        
+        return poolSparklineStore.snapshot(pools);
     }
 
     @Override
@@ -244,7 +438,10 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
             queryWrapper.le(PoolStatus::getRecordTime, endTime);
         }
         
-        List<PoolStatus> statusList = this.list(queryWrapper);
+        queryWrapper.orderByAsc(PoolStatus::getRecordTime);
+        
+        List<PoolStatus> recordList = this.list(queryWrapper);
+        List<PoolStatus> statusList = carryForward(poolId, recordList, startTime, endTime);
         
         if (statusList.isEmpty()) {
             return new HashMap<>();
@@ -252,11 +449,8 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
         
         Map<String, Object> statistics = new HashMap<>();
         
-        // 计算统计数据
-        OptionalDouble avgPressure = statusList.stream()
-                .filter(s -> s.getPressure() != null)
-                .mapToDouble(s -> s.getPressure().doubleValue())
-                .average();
+        // 计算统计数据，平均压力按每个值持续的时间加权（只变化写入时相同的值不会重复入库）
+        OptionalDouble avgPressure = timeWeightedPressure(statusList, endTime);
         
         OptionalInt maxValidCount = statusList.stream()
                 .filter(s -> s.getValidCount() != null)
@@ -268,7 +462,7 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
                 .mapToInt(PoolStatus::getValidCount)
                 .min();
         
-        statistics.put("recordCount", statusList.size());
+        statistics.put("recordCount", recordList.size());
         statistics.put("avgPressure", avgPressure.isPresent() ? 
                 BigDecimal.valueOf(avgPressure.getAsDouble()).setScale(2, RoundingMode.HALF_UP) : null);
         statistics.put("maxValidCount", maxValidCount.isPresent() ? maxValidCount.getAsInt() : null);
@@ -277,26 +471,48 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
         return statistics;
     }
 
+    /**
+     * 按时间加权的平均压力，每条记录的值持续到下一条记录，最后一条持续到结束时间
+     */
+    private OptionalDouble timeWeightedPressure(List<PoolStatus> statusList, Long endTime) {
+        long end = endTime != null ? endTime : System.currentTimeMillis();
+        double weighted = 0;
+        long totalDuration = 0;
+        for (int i = 0; i < statusList.size(); i++) {
+            PoolStatus status = statusList.get(i);
+            if (status.getPressure() == null) {
+                continue;
+            }
+            long until = i + 1 < statusList.size() ? statusList.get(i + 1).getRecordTime() : Math.max(end, status.getRecordTime());
+            long duration = until - status.getRecordTime();
+            weighted += status.getPressure().doubleValue() * duration;
+            totalDuration += duration;
+        }
+        if (totalDuration > 0) {
+            return OptionalDouble.of(weighted / totalDuration);
+        }
+        return statusList.stream()
+                .filter(s -> s.getPressure() != null)
+                .mapToDouble(s -> s.getPressure().doubleValue())
+                .average();
+    }
+
     @Override
     public Map<String, Object> getOverviewStatistics() {
         Map<String, Object> statistics = new HashMap<>();
         
         // 获取所有启用的号池数量
-        LambdaQueryWrapper<Pool> poolQuery = new LambdaQueryWrapper<>   ();
-        poolQuery.eq(Pool::getEnabled, true);
-        long totalPools = poolMapper.selectCount(poolQuery);
+        long totalPools = poolCatalog.getEnabledPools().size();
         
-        // 获取活跃号池数量（最近有状态更新的）
-        long oneHourAgo = System.currentTimeMillis() - 3600000; // 1小时前
-        LambdaQueryWrapper<PoolStatus> activeQuery = new LambdaQueryWrapper<>();
-        activeQuery.ge(PoolStatus::getRecordTime, oneHourAgo)
-                  .groupBy(PoolStatus::getPoolId);
-// 获取去重后的poolId列表，其大小就是活跃号池数量
-        List<Object> activePoolIds = poolStatusMapper.selectObjs(activeQuery);
-        long activePools = activePoolIds.size();
         // 获取所有最新状态
         List<PoolStatusDTO> latestStatuses = getAllLatestPoolStatus();
         
+        // 获取活跃号池数量（最近有状态观测的），只变化写入时不能按入库记录判断
+        long oneHourAgo = System.currentTimeMillis() - 3600000; // 1小时前
+        long activePools = latestStatuses.stream()
+                .filter(s -> s.getRecordTime() != null && s.getRecordTime() >= oneHourAgo)
+                .count();
+        
         // 计算总计数据
         int totalValidCount = latestStatuses.stream()
                 .mapToInt(s -> s.getValidCount() != null ? s.getValidCount() : 0)
@@ -423,6 +639,59 @@ public class PoolStatusServiceImpl extends ServiceImpl<PoolStatusMapper, PoolSta
         return false;
     }
 
+    /**
+     * 将分桶数据填充到时间网格上，空桶沿用上一个桶的值
+     */
+    private PoolTrendMatrixDTO.Series toMatrixSeries(TimeGrid grid, List<PoolStatusBucketDTO> buckets) {
+        int points = grid.getPoints();
+        int[] validCount = new int[points];
+        int[] invalidCount = new int[points];
+        int[] coolingCount = new int[points];
+        int[] totalCount = new int[points];
+        double[] pressure = new double[points];
+        
+        int offset = points;
+        int cursor = 0;
+        PoolStatusBucketDTO current = null;
+        for (int i = 0; i < points; i++) {
+            // 推进到当前桶（含网格起点之前的种子样本）
+            while (cursor < buckets.size() && grid.indexOf(buckets.get(cursor).getBucketTime()) <= i) {
+                current = buckets.get(cursor++);
+            }
+            if (current == null) {
+                continue;
+            }
+            if (offset == points) {
+                offset = i;
+            }
+            validCount[i] = current.getValidCount() != null ? current.getValidCount() : 0;
+            invalidCount[i] = current.getInvalidCount() != null ? current.getInvalidCount() : 0;
+            coolingCount[i] = current.getCoolingCount() != null ? current.getCoolingCount() : 0;
+            totalCount[i] = current.getTotalCount() != null ? current.getTotalCount() : 0;
+            pressure[i] = current.getPressure() != null ? current.getPressure() : 0.0;
+        }
+        
+        PoolTrendMatrixDTO.Series row = new PoolTrendMatrixDTO.Series();
+        row.setOffset(offset);
+        row.setValidCount(validCount);
+        row.setInvalidCount(invalidCount);
+        row.setCoolingCount(coolingCount);
+        row.setTotalCount(totalCount);
+        row.setPressure(pressure);
+        return row;
+    }
+
+    /**
+     * 判断样本是否需要入库
+     */
+    private boolean shouldPersist(PoolStatus status) {
+        AppConfig.Collection collection = appConfig.getCollection();
+        if (!collection.isChangeOnlyStorage()) {
+            return true;
+        }
+        return latestPoolStatusCache.shouldPersist(status, collection.getHeartbeatSeconds() * 1000L);
+    }
+
     /**
      * 将实体转换为DTO
      */
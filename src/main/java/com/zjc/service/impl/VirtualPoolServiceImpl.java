@@ -4,26 +4,42 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.AggregationStrategyRegistry;
+import com.zjc.aggregate.StatusAggregator;
+import com.zjc.aggregate.WeightVector;
+import com.zjc.cache.PoolCatalog;
+import com.zjc.cache.VirtualPoolAggregateIndex;
+import com.zjc.cache.VirtualPoolHierarchy;
+import com.zjc.cache.VirtualPoolMembershipIndex;
+import com.zjc.dto.PoolStatusBucketDTO;
 import com.zjc.dto.PoolStatusDTO;
 import com.zjc.dto.VirtualPoolDTO;
-import com.zjc.entity.Pool;
+import com.zjc.dto.PoolDTO;
 import com.zjc.entity.VirtualPool;
-import com.zjc.mapper.PoolMapper;
+import com.zjc.event.VirtualPoolChangedEvent;
+import com.zjc.formula.MetricFormulaSet;
 import com.zjc.mapper.VirtualPoolMapper;
 import com.zjc.service.PoolStatusService;
 import com.zjc.service.VirtualPoolService;
+import com.zjc.trend.BucketedTrendReader;
+import com.zjc.trend.TimeGrid;
+import com.zjc.trend.VirtualPoolTrendMerger;
 import com.zjc.util.BeanUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -36,11 +52,46 @@ import java.util.stream.Collectors;
 @Service
 public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, VirtualPool> implements VirtualPoolService {
 
+    /**
+     * 趋势查询默认桶宽度（秒），与采集周期一致
+     */
+    private static final int DEFAULT_TREND_INTERVAL_SECONDS = 60;
+    
+    /**
+     * 趋势查询的最大点数，超过时自动放大桶宽度
+     */
+    private static final int MAX_TREND_POINTS = 1440;
+
+    /**
+     * 与原先查询一致：按显示顺序升序、创建时间倒序
+     */
+    private static final Comparator<VirtualPool> DISPLAY_ORDER = Comparator
+            .comparing(VirtualPool::getDisplayOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(VirtualPool::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder()));
+
     @Autowired
-    private PoolMapper poolMapper;
+    private PoolCatalog poolCatalog;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
     @Autowired
     private PoolStatusService poolStatusService;
+    
+    @Autowired
+    private BucketedTrendReader bucketedTrendReader;
+    
+    @Autowired
+    private VirtualPoolAggregateIndex virtualPoolAggregateIndex;
+    
+    @Autowired
+    private VirtualPoolMembershipIndex virtualPoolMembershipIndex;
+    
+    @Autowired
+    private VirtualPoolHierarchy virtualPoolHierarchy;
+    
+    @Autowired
+    private AggregationStrategyRegistry aggregationStrategyRegistry;
 
     @Override
     public Page<VirtualPoolDTO> getVirtualPoolPage(long current, long size, String name, String strategy) {
@@ -74,7 +125,7 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
 
     @Override
     public VirtualPoolDTO getVirtualPoolById(Long id) {
-        VirtualPool virtualPool = this.getById(id);
+        VirtualPool virtualPool = poolCatalog.getVirtualPool(id);
         return virtualPool != null ? convertToDTO(virtualPool) : null;
     }
 
@@ -97,7 +148,7 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         
         // 设置默认值
         if (virtualPool.getAggregateStrategy() == null) {
-            virtualPool.setAggregateStrategy("sum");
+            virtualPool.setAggregateStrategy(AggregationStrategyRegistry.DEFAULT_STRATEGY);
         }
         if (virtualPool.getEnabled() == null) {
             virtualPool.setEnabled(true);
@@ -111,6 +162,9 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
             throw new RuntimeException("保存虚拟聚合池失败");
         }
         
+        refreshIndexes(virtualPool);
+        eventPublisher.publishEvent(VirtualPoolChangedEvent.saved(virtualPool.getId()));
+        
         log.info("创建虚拟聚合池成功: {}", virtualPool.getName());
         return convertToDTO(virtualPool);
     }
@@ -150,6 +204,10 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
             throw new RuntimeException("更新虚拟聚合池失败");
         }
         
+        // 未传入的字段不会被更新，按数据库中的最新记录重建聚合值
+        refreshIndexes(this.getById(id));
+        eventPublisher.publishEvent(VirtualPoolChangedEvent.saved(id));
+        
         log.info("更新虚拟聚合池成功: {}", updateVirtualPool.getName());
         return convertToDTO(updateVirtualPool);
     }
@@ -164,6 +222,8 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         
         boolean deleted = this.removeById(id);
         if (deleted) {
+            removeFromIndexes(id);
+            eventPublisher.publishEvent(VirtualPoolChangedEvent.deleted(java.util.Collections.singletonList(id)));
             log.info("删除虚拟聚合池成功: {}", virtualPool.getName());
         }
         
@@ -179,6 +239,8 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         
         boolean deleted = this.removeByIds(ids);
         if (deleted) {
+            ids.forEach(this::removeFromIndexes);
+            eventPublisher.publishEvent(VirtualPoolChangedEvent.deleted(ids));
             log.info("批量删除虚拟聚合池成功，数量: {}", ids.size());
         }
         
@@ -194,6 +256,8 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         
         boolean updated = this.update(updateWrapper);
         if (updated) {
+            virtualPoolMembershipIndex.refresh(this.getById(id));
+            eventPublisher.publishEvent(VirtualPoolChangedEvent.saved(id));
             log.info("切换虚拟聚合池启用状态成功: id={}, enabled={}", id, enabled);
         }
         
@@ -202,38 +266,26 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
 
     @Override
     public List<VirtualPoolDTO> getAllVirtualPools() {
-        LambdaQueryWrapper<VirtualPool> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(VirtualPool::getEnabled, true)
-                   .orderByAsc(VirtualPool::getDisplayOrder)
-                   .orderByDesc(VirtualPool::getCreateTime);
-        
-        List<VirtualPool> virtualPools = this.list(queryWrapper);
-        return virtualPools.stream()
+        return getEnabledVirtualPools().stream()
                           .map(this::convertToDTO)
                           .collect(Collectors.toList());
     }
 
     @Override
     public List<VirtualPoolDTO> getVirtualPoolsByDisplayOrder() {
-        LambdaQueryWrapper<VirtualPool> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(VirtualPool::getEnabled, true)
-                   .orderByAsc(VirtualPool::getDisplayOrder)
-                   .orderByDesc(VirtualPool::getCreateTime);
-        
-        List<VirtualPool> virtualPools = this.list(queryWrapper);
-        return virtualPools.stream()
-                          .map(this::convertToDTO)
-                          .collect(Collectors.toList());
+        return getAllVirtualPools();
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean updateVirtualPoolDisplayOrder(Long id, Integer displayOrder) {
-        LambdaUpdateWrapper<VirtualPool> updateWrapper = new LambdaUpdateWrapper<>();
-        updateWrapper.eq(VirtualPool::getId, id)
-                    .set(VirtualPool::getDisplayOrder, displayOrder);
+        boolean updated = setDisplayOrder(id, displayOrder);
+        if (updated) {
+            // 列表从内存目录读取，需要通知目录重新加载
+            eventPublisher.publishEvent(VirtualPoolChangedEvent.saved(id));
+        }
         
-        return this.update(updateWrapper);
+        return updated;
     }
 
     @Override
@@ -243,15 +295,29 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
             return true;
         }
         
+        List<Long> updatedIds = new ArrayList<>();
         for (VirtualPoolDTO dto : virtualPools) {
-            if (dto.getId() != null && dto.getDisplayOrder() != null) {
-                updateVirtualPoolDisplayOrder(dto.getId(), dto.getDisplayOrder());
+            if (dto.getId() != null && dto.getDisplayOrder() != null && setDisplayOrder(dto.getId(), dto.getDisplayOrder())) {
+                updatedIds.add(dto.getId());
             }
         }
         
+        // 整批只发布一次变更事件
+        if (!updatedIds.isEmpty()) {
+            eventPublisher.publishEvent(VirtualPoolChangedEvent.saved(updatedIds));
+        }
+        
         return true;
     }
 
+    private boolean setDisplayOrder(Long id, Integer displayOrder) {
+        LambdaUpdateWrapper<VirtualPool> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(VirtualPool::getId, id)
+                    .set(VirtualPool::getDisplayOrder, displayOrder);
+        
+        return this.update(updateWrapper);
+    }
+
     @Override
     public boolean isVirtualPoolNameAvailable(String name, Long excludeId) {
         LambdaQueryWrapper<VirtualPool> queryWrapper = new LambdaQueryWrapper<>();
@@ -267,75 +333,11 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
     @Override
     public VirtualPoolDTO calculateVirtualPoolStatus(Long id) {
         VirtualPoolDTO virtualPool = getVirtualPoolById(id);
-        if (virtualPool == null || virtualPool.getPoolIds() == null || virtualPool.getPoolIds().isEmpty()) {
-            return virtualPool;
-        }
-        
-        // 获取聚合号池的最新状态
-        List<PoolStatusDTO> poolStatuses = poolStatusService.getLatestPoolStatusByIds(virtualPool.getPoolIds());
-        
-        if (poolStatuses.isEmpty()) {
-            return virtualPool;
-        }
-        
-        // 根据聚合策略计算聚合值
-        String strategy = virtualPool.getAggregateStrategy();
-        
-        if ("sum".equals(strategy)) {
-            // 求和策略
-            virtualPool.setAggregatedValidCount(
-                poolStatuses.stream().mapToInt(s -> s.getValidCount() != null ? s.getValidCount() : 0).sum()
-            );
-            virtualPool.setAggregatedInvalidCount(
-                poolStatuses.stream().mapToInt(s -> s.getInvalidCount() != null ? s.getInvalidCount() : 0).sum()
-            );
-            virtualPool.setAggregatedCoolingCount(
-                poolStatuses.stream().mapToInt(s -> s.getCoolingCount() != null ? s.getCoolingCount() : 0).sum()
-            );
-            virtualPool.setAggregatedTotalCount(
-                poolStatuses.stream().mapToInt(s -> s.getTotalCount() != null ? s.getTotalCount() : 0).sum()
-            );
-            
-        } else if ("average".equals(strategy)) {
-            // 平均值策略
-            virtualPool.setAggregatedValidCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getValidCount() != null ? s.getValidCount() : 0).average().orElse(0)
-            );
-            virtualPool.setAggregatedInvalidCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getInvalidCount() != null ? s.getInvalidCount() : 0).average().orElse(0)
-            );
-            virtualPool.setAggregatedCoolingCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getCoolingCount() != null ? s.getCoolingCount() : 0).average().orElse(0)
-            );
-            virtualPool.setAggregatedTotalCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getTotalCount() != null ? s.getTotalCount() : 0).average().orElse(0)
-            );
-            
-        } else if ("weighted".equals(strategy)) {
-            // 加权平均策略（暂时使用简单平均，后续可扩展权重配置）
-            virtualPool.setAggregatedValidCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getValidCount() != null ? s.getValidCount() : 0).average().orElse(0)
-            );
-            virtualPool.setAggregatedInvalidCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getInvalidCount() != null ? s.getInvalidCount() : 0).average().orElse(0)
-            );
-            virtualPool.setAggregatedCoolingCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getCoolingCount() != null ? s.getCoolingCount() : 0).average().orElse(0)
-            );
-            virtualPool.setAggregatedTotalCount(
-                (int) poolStatuses.stream().mapToInt(s -> s.getTotalCount() != null ? s.getTotalCount() : 0).average().orElse(0)
-            );
-        }
-        
-        // 计算聚合压力值
-        if (virtualPool.getAggregatedTotalCount() != null && virtualPool.getAggregatedTotalCount() > 0 
-            && virtualPool.getAggregatedValidCount() != null) {
-            BigDecimal pressure = BigDecimal.valueOf(virtualPool.getAggregatedValidCount())
-                    .divide(BigDecimal.valueOf(virtualPool.getAggregatedTotalCount()), 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100));
-            virtualPool.setAggregatedPressure(pressure);
+        if (virtualPool == null) {
+            return null;
         }
         
+        fillAggregatedStatus(virtualPool);
         return virtualPool;
     }
 
@@ -343,9 +345,9 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
     public List<VirtualPoolDTO> calculateAllVirtualPoolStatus() {
         List<VirtualPoolDTO> enabledVirtualPools = getAllVirtualPools();
         
-        return enabledVirtualPools.stream()
-                .map(vp -> calculateVirtualPoolStatus(vp.getId()))
-                .collect(Collectors.toList());
+        // 聚合值直接从索引读取，不再逐个重新查询虚拟池和成员状态
+        enabledVirtualPools.forEach(this::fillAggregatedStatus);
+        return enabledVirtualPools;
     }
 
     @Override
@@ -363,6 +365,7 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         status.put("coolingCount", virtualPool.getAggregatedCoolingCount());
         status.put("totalCount", virtualPool.getAggregatedTotalCount());
         status.put("pressure", virtualPool.getAggregatedPressure());
+        status.put("metrics", virtualPool.getAggregatedMetrics());
         status.put("strategy", virtualPool.getAggregateStrategy());
         
         return status;
@@ -370,18 +373,19 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
 
     @Override
     public List<Map<String, Object>> getAllVirtualPoolStatus() {
-        List<VirtualPoolDTO> virtualPools = calculateAllVirtualPoolStatus();
-        
-        return virtualPools.stream()
+        // 只需要ID、名称和策略，不解析成员号池名称
+        return getEnabledVirtualPools().stream()
                 .map(vp -> {
+                    VirtualPoolAggregateIndex.Snapshot snapshot = virtualPoolAggregateIndex.get(vp.getId());
                     Map<String, Object> status = new java.util.HashMap<>();
                     status.put("id", vp.getId());
                     status.put("name", vp.getName());
-                    status.put("validCount", vp.getAggregatedValidCount());
-                    status.put("invalidCount", vp.getAggregatedInvalidCount());
-                    status.put("coolingCount", vp.getAggregatedCoolingCount());
-                    status.put("totalCount", vp.getAggregatedTotalCount());
-                    status.put("pressure", vp.getAggregatedPressure());
+                    status.put("validCount", snapshot != null ? snapshot.getValidCount() : null);
+                    status.put("invalidCount", snapshot != null ? snapshot.getInvalidCount() : null);
+                    status.put("coolingCount", snapshot != null ? snapshot.getCoolingCount() : null);
+                    status.put("totalCount", snapshot != null ? snapshot.getTotalCount() : null);
+                    status.put("pressure", snapshot != null ? snapshot.getPressure() : null);
+                    status.put("metrics", snapshot != null ? snapshot.getMetrics() : null);
                     status.put("strategy", vp.getAggregateStrategy());
                     return status;
                 })
@@ -390,31 +394,88 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
 
     @Override
     public List<Map<String, Object>> getVirtualPoolTrend(Long id, Long startTime, Long endTime, Integer interval) {
-        // 暂时返回空列表，后续可以实现历史数据查询
-        return new ArrayList<>();
+        VirtualPool virtualPool = poolCatalog.getVirtualPool(id);
+        if (virtualPool == null) {
+            return null;
+        }
+        
+        long end = endTime != null ? endTime : System.currentTimeMillis();
+        long start = startTime != null ? startTime : end - 24L * 60L * 60L * 1000L;
+        long stepMs = (interval != null && interval > 0 ? interval : DEFAULT_TREND_INTERVAL_SECONDS) * 1000L;
+        TimeGrid grid = TimeGrid.of(start, end, stepMs, MAX_TREND_POINTS);
+        
+        return mergeVirtualPoolTrend(virtualPool, grid, new HashSet<>());
+    }
+
+    /**
+     * 在同一网格上合并虚拟池的趋势
+     * 成员号池分桶读取，下级虚拟池递归合并后作为成员序列参与归并
+     */
+    private List<Map<String, Object>> mergeVirtualPoolTrend(VirtualPool virtualPool, TimeGrid grid, Set<Long> visiting) {
+        if (!visiting.add(virtualPool.getId())) {
+            return new ArrayList<>();
+        }
+        
+        List<Long> poolIds = BeanUtils.jsonToLongList(virtualPool.getPoolIds());
+        List<Long> childIds = virtualPoolHierarchy.getChildren(virtualPool.getId());
+        
+        List<String> memberKeys = new ArrayList<>();
+        List<List<PoolStatusBucketDTO>> memberSeries = new ArrayList<>();
+        if (!poolIds.isEmpty()) {
+            for (Map.Entry<Long, List<PoolStatusBucketDTO>> entry : bucketedTrendReader.readAll(poolIds, grid).entrySet()) {
+                memberKeys.add(String.valueOf(entry.getKey()));
+                memberSeries.add(entry.getValue());
+            }
+        }
+        for (Long childId : childIds) {
+            VirtualPool child = poolCatalog.getVirtualPool(childId);
+            if (child != null) {
+                memberKeys.add(WeightVector.virtualPoolKey(childId));
+                memberSeries.add(toBucketSeries(childId, mergeVirtualPoolTrend(child, grid, visiting)));
+            }
+        }
+        visiting.remove(virtualPool.getId());
+        
+        if (memberSeries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        AggregationStrategy strategy = aggregationStrategyRegistry.get(virtualPool.getAggregateStrategy());
+        WeightVector weights = strategy.usesWeights()
+                ? WeightVector.ofKeys(memberKeys, BeanUtils.jsonToMap(virtualPool.getWeightConfig()))
+                : null;
+        return VirtualPoolTrendMerger.merge(grid, memberSeries, strategy, weights);
+    }
+
+    /**
+     * 将下级虚拟池的趋势数据转换为分桶序列
+     */
+    private List<PoolStatusBucketDTO> toBucketSeries(Long virtualPoolId, List<Map<String, Object>> rows) {
+        List<PoolStatusBucketDTO> series = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            PoolStatusBucketDTO bucket = new PoolStatusBucketDTO();
+            bucket.setPoolId(virtualPoolId);
+            bucket.setBucketTime((Long) row.get("recordTime"));
+            bucket.setValidCount((Integer) row.get("validCount"));
+            bucket.setInvalidCount((Integer) row.get("invalidCount"));
+            bucket.setCoolingCount((Integer) row.get("coolingCount"));
+            bucket.setTotalCount((Integer) row.get("totalCount"));
+            series.add(bucket);
+        }
+        return series;
     }
 
     @Override
     public List<Map<String, String>> getAvailableStrategies() {
         List<Map<String, String>> strategies = new ArrayList<>();
         
-        Map<String, String> sumStrategy = new java.util.HashMap<>();
-        sumStrategy.put("value", "sum");
-        sumStrategy.put("label", "求和");
-        sumStrategy.put("description", "将所有号池的数值相加");
-        strategies.add(sumStrategy);
-        
-        Map<String, String> avgStrategy = new java.util.HashMap<>();
-        avgStrategy.put("value", "average");
-        avgStrategy.put("label", "平均值");
-        avgStrategy.put("description", "计算所有号池的平均值");
-        strategies.add(avgStrategy);
-        
-        Map<String, String> weightedStrategy = new java.util.HashMap<>();
-        weightedStrategy.put("value", "weighted");
-        weightedStrategy.put("label", "加权平均");
-        weightedStrategy.put("description", "根据权重配置计算加权平均值");
-        strategies.add(weightedStrategy);
+        for (AggregationStrategy strategy : aggregationStrategyRegistry.getAll()) {
+            Map<String, String> item = new java.util.HashMap<>();
+            item.put("value", strategy.getName());
+            item.put("label", strategy.getLabel());
+            item.put("description", strategy.getDescription());
+            strategies.add(item);
+        }
         
         return strategies;
     }
@@ -423,54 +484,70 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
     public Map<String, Object> previewVirtualPool(VirtualPoolDTO virtualPoolDTO) {
         Map<String, Object> preview = new java.util.HashMap<>();
         
-        if (virtualPoolDTO.getPoolIds() == null || virtualPoolDTO.getPoolIds().isEmpty()) {
+        List<Long> poolIds = virtualPoolDTO.getPoolIds() != null ? virtualPoolDTO.getPoolIds() : new ArrayList<>();
+        List<Long> childIds = virtualPoolDTO.getVirtualPoolIds() != null ? virtualPoolDTO.getVirtualPoolIds() : new ArrayList<>();
+        if (poolIds.isEmpty() && childIds.isEmpty()) {
             preview.put("valid", false);
             preview.put("message", "请选择要聚合的号池");
             return preview;
         }
         
-        // 获取聚合号池的最新状态进行预览
-        List<PoolStatusDTO> poolStatuses = poolStatusService.getLatestPoolStatusByIds(virtualPoolDTO.getPoolIds());
+        // 获取聚合号池的最新状态和下级虚拟池的当前聚合值进行预览
+        List<PoolStatusDTO> poolStatuses = poolIds.isEmpty()
+                ? new ArrayList<>()
+                : poolStatusService.getLatestPoolStatusByIds(poolIds);
+        List<String> memberKeys = new ArrayList<>();
+        List<int[]> memberValues = new ArrayList<>();
+        for (PoolStatusDTO s : poolStatuses) {
+            memberKeys.add(String.valueOf(s.getPoolId()));
+            memberValues.add(new int[]{
+                s.getValidCount() != null ? s.getValidCount() : 0,
+                s.getInvalidCount() != null ? s.getInvalidCount() : 0,
+                s.getCoolingCount() != null ? s.getCoolingCount() : 0,
+                s.getTotalCount() != null ? s.getTotalCount() : 0
+            });
+        }
+        for (Long childId : childIds) {
+            VirtualPoolAggregateIndex.Snapshot snapshot = virtualPoolAggregateIndex.get(childId);
+            if (snapshot != null) {
+                memberKeys.add(WeightVector.virtualPoolKey(childId));
+                memberValues.add(new int[]{
+                    snapshot.getValidCount(), snapshot.getInvalidCount(), snapshot.getCoolingCount(), snapshot.getTotalCount()
+                });
+            }
+        }
         
-        if (poolStatuses.isEmpty()) {
+        if (memberValues.isEmpty()) {
             preview.put("valid", false);
             preview.put("message", "无法获取号池状态数据");
             return preview;
         }
         
-        // 模拟聚合计算
-        String strategy = virtualPoolDTO.getAggregateStrategy();
-        int validCount = 0;
-        int invalidCount = 0;
-        int coolingCount = 0;
-        int totalCount = 0;
-        
-        if ("sum".equals(strategy)) {
-            validCount = poolStatuses.stream().mapToInt(s -> s.getValidCount() != null ? s.getValidCount() : 0).sum();
-            invalidCount = poolStatuses.stream().mapToInt(s -> s.getInvalidCount() != null ? s.getInvalidCount() : 0).sum();
-            coolingCount = poolStatuses.stream().mapToInt(s -> s.getCoolingCount() != null ? s.getCoolingCount() : 0).sum();
-            totalCount = poolStatuses.stream().mapToInt(s -> s.getTotalCount() != null ? s.getTotalCount() : 0).sum();
-        } else if ("average".equals(strategy)) {
-            validCount = (int) poolStatuses.stream().mapToInt(s -> s.getValidCount() != null ? s.getValidCount() : 0).average().orElse(0);
-            invalidCount = (int) poolStatuses.stream().mapToInt(s -> s.getInvalidCount() != null ? s.getInvalidCount() : 0).average().orElse(0);
-            coolingCount = (int) poolStatuses.stream().mapToInt(s -> s.getCoolingCount() != null ? s.getCoolingCount() : 0).average().orElse(0);
-            totalCount = (int) poolStatuses.stream().mapToInt(s -> s.getTotalCount() != null ? s.getTotalCount() : 0).average().orElse(0);
-        }
-        
-        BigDecimal pressure = BigDecimal.ZERO;
-        if (totalCount > 0) {
-            pressure = BigDecimal.valueOf(validCount)
-                    .divide(BigDecimal.valueOf(totalCount), 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100));
+        // 模拟聚合计算，遍历一次成员完成所有指标的累加
+        AggregationStrategy strategy = aggregationStrategyRegistry.get(virtualPoolDTO.getAggregateStrategy());
+        WeightVector weights = strategy.usesWeights()
+                ? WeightVector.ofKeys(memberKeys, virtualPoolDTO.getWeightConfig())
+                : null;
+        
+        StatusAggregator aggregator = new StatusAggregator(strategy);
+        for (int i = 0; i < memberValues.size(); i++) {
+            int[] v = memberValues.get(i);
+            aggregator.add(v[0], v[1], v[2], v[3], weights != null ? weights.get(i) : WeightVector.DEFAULT_WEIGHT);
         }
         
+        int validCount = aggregator.getValidCount();
+        int invalidCount = aggregator.getInvalidCount();
+        int coolingCount = aggregator.getCoolingCount();
+        int totalCount = aggregator.getTotalCount();
+        BigDecimal pressure = aggregator.getPressure() != null ? aggregator.getPressure() : BigDecimal.ZERO;
+        
         preview.put("valid", true);
         preview.put("validCount", validCount);
         preview.put("invalidCount", invalidCount);
         preview.put("coolingCount", coolingCount);
         preview.put("totalCount", totalCount);
         preview.put("pressure", pressure);
-        preview.put("poolCount", poolStatuses.size());
+        preview.put("poolCount", memberValues.size());
         
         return preview;
     }
@@ -492,17 +569,11 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         // 统计各种聚合策略的使用情况
         Map<String, Long> strategyStats = new java.util.HashMap<>();
         
-        LambdaQueryWrapper<VirtualPool> sumQuery = new LambdaQueryWrapper<>();
-        sumQuery.eq(VirtualPool::getAggregateStrategy, "sum");
-        strategyStats.put("sum", this.count(sumQuery));
-        
-        LambdaQueryWrapper<VirtualPool> avgQuery = new LambdaQueryWrapper<>();
-        avgQuery.eq(VirtualPool::getAggregateStrategy, "average");
-        strategyStats.put("average", this.count(avgQuery));
-        
-        LambdaQueryWrapper<VirtualPool> weightedQuery = new LambdaQueryWrapper<>();
-        weightedQuery.eq(VirtualPool::getAggregateStrategy, "weighted");
-        strategyStats.put("weighted", this.count(weightedQuery));
+        for (AggregationStrategy strategy : aggregationStrategyRegistry.getAll()) {
+            LambdaQueryWrapper<VirtualPool> strategyQuery = new LambdaQueryWrapper<>();
+            strategyQuery.eq(VirtualPool::getAggregateStrategy, strategy.getName());
+            strategyStats.put(strategy.getName(), this.count(strategyQuery));
+        }
         
         statistics.put("strategyStats", strategyStats);
         
@@ -525,15 +596,17 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
             return result;
         }
         
-        if (virtualPoolDTO.getPoolIds() == null || virtualPoolDTO.getPoolIds().isEmpty()) {
+        List<Long> poolIds = virtualPoolDTO.getPoolIds() != null ? virtualPoolDTO.getPoolIds() : new ArrayList<>();
+        List<Long> childIds = virtualPoolDTO.getVirtualPoolIds() != null ? virtualPoolDTO.getVirtualPoolIds() : new ArrayList<>();
+        if (poolIds.isEmpty() && childIds.isEmpty()) {
             result.put("valid", false);
-            result.put("message", "必须选择至少一个号池进行聚合");
+            result.put("message", "必须选择至少一个号池或虚拟聚合池进行聚合");
             return result;
         }
         
         // 检查聚合的号池是否存在且启用
-        for (Long poolId : virtualPoolDTO.getPoolIds()) {
-            Pool pool = poolMapper.selectById(poolId);
+        for (Long poolId : poolIds) {
+            PoolDTO pool = poolCatalog.getPool(poolId);
             if (pool == null) {
                 result.put("valid", false);
                 result.put("message", "号池不存在: " + poolId);
@@ -546,15 +619,77 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
             }
         }
         
+        // 检查下级虚拟池是否存在，且不能形成循环引用
+        for (Long childId : childIds) {
+            if (childId == null || childId.equals(virtualPoolDTO.getId())) {
+                result.put("valid", false);
+                result.put("message", "虚拟聚合池不能聚合自身");
+                return result;
+            }
+            if (poolCatalog.getVirtualPool(childId) == null) {
+                result.put("valid", false);
+                result.put("message", "虚拟聚合池不存在: " + childId);
+                return result;
+            }
+        }
+        Long cycleChildId = virtualPoolHierarchy.findCycle(virtualPoolDTO.getId(), childIds);
+        if (cycleChildId != null) {
+            result.put("valid", false);
+            result.put("message", "虚拟聚合池层级存在循环引用: " + cycleChildId);
+            return result;
+        }
+        
         // 检查聚合策略
         String strategy = virtualPoolDTO.getAggregateStrategy();
-        if (StringUtils.hasText(strategy) &&
-            !("sum".equals(strategy) || "average".equals(strategy) || "weighted".equals(strategy))) {
+        if (StringUtils.hasText(strategy) && !aggregationStrategyRegistry.contains(strategy)) {
             result.put("valid", false);
             result.put("message", "不支持的聚合策略: " + strategy);
             return result;
         }
         
+        // 检查权重配置
+        Map<String, Object> weightConfig = virtualPoolDTO.getWeightConfig();
+        if (weightConfig != null && !weightConfig.isEmpty()) {
+            for (Map.Entry<String, Object> entry : weightConfig.entrySet()) {
+                String key = entry.getKey();
+                boolean child = key != null && key.startsWith(WeightVector.VIRTUAL_POOL_KEY_PREFIX);
+                Long memberId;
+                try {
+                    memberId = Long.valueOf(child ? key.substring(WeightVector.VIRTUAL_POOL_KEY_PREFIX.length()) : key);
+                } catch (NumberFormatException | NullPointerException e) {
+                    memberId = null;
+                }
+                if (memberId == null || !(child ? childIds : poolIds).contains(memberId)) {
+                    result.put("valid", false);
+                    result.put("message", "权重配置中的号池不在聚合列表中: " + key);
+                    return result;
+                }
+                
+                Double weight = WeightVector.parseWeight(entry.getValue());
+                if (weight == null || weight < 0) {
+                    result.put("valid", false);
+                    result.put("message", "号池权重必须为非负数: " + entry.getKey());
+                    return result;
+                }
+            }
+        }
+        
+        // 检查自定义指标公式，of中引用的号池必须在聚合列表中
+        Map<String, Object> metricFormulas = virtualPoolDTO.getMetricFormulas();
+        if (metricFormulas != null && !metricFormulas.isEmpty()) {
+            Map<Long, Integer> poolSlots = new java.util.HashMap<>();
+            for (Long poolId : poolIds) {
+                poolSlots.putIfAbsent(poolId, poolSlots.size());
+            }
+            try {
+                MetricFormulaSet.compile(metricFormulas, poolSlots, poolSlots.size() + childIds.size());
+            } catch (IllegalArgumentException e) {
+                result.put("valid", false);
+                result.put("message", "自定义指标配置错误: " + e.getMessage());
+                return result;
+            }
+        }
+        
         result.put("valid", true);
         result.put("message", "验证通过");
         return result;
@@ -562,20 +697,72 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
 
     @Override
     public List<VirtualPoolDTO> getVirtualPoolsContainingPool(Long poolId) {
-        LambdaQueryWrapper<VirtualPool> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(VirtualPool::getEnabled, true);
-        
-        List<VirtualPool> allVirtualPools = this.list(queryWrapper);
+        // 从成员索引直接定位，不再逐个解析虚拟池的号池列表
+        List<Long> virtualPoolIds = virtualPoolMembershipIndex.getVirtualPoolIdsContaining(poolId, true);
+        if (virtualPoolIds.isEmpty()) {
+            return new ArrayList<>();
+        }
         
-        return allVirtualPools.stream()
-                .filter(vp -> {
-                    List<Long> poolIds = BeanUtils.jsonToLongList(vp.getPoolIds());
-                    return poolIds.contains(poolId);
-                })
+        return virtualPoolIds.stream()
+                .map(poolCatalog::getVirtualPool)
+                .filter(java.util.Objects::nonNull)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Map<String, Object> getVirtualPoolMembership(List<Long> ids) {
+        Map<String, Object> membership = new java.util.HashMap<>();
+        membership.put("intersection", virtualPoolMembershipIndex.intersectMembers(ids));
+        membership.put("union", virtualPoolMembershipIndex.unionMembers(ids));
+        return membership;
+    }
+
+    /**
+     * 从内存目录获取启用的虚拟池，按显示顺序排序
+     */
+    private List<VirtualPool> getEnabledVirtualPools() {
+        return poolCatalog.getVirtualPools().stream()
+                .filter(vp -> Boolean.TRUE.equals(vp.getEnabled()))
+                .sorted(DISPLAY_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 虚拟池新建或修改后刷新内存索引，成员关系和层级关系需先于聚合值更新
+     */
+    private void refreshIndexes(VirtualPool virtualPool) {
+        virtualPoolMembershipIndex.refresh(virtualPool);
+        virtualPoolHierarchy.refresh(virtualPool);
+        virtualPoolAggregateIndex.refresh(virtualPool);
+    }
+
+    /**
+     * 虚拟池删除后移除内存索引，聚合值需在层级关系移除前清理上级中的成员值
+     */
+    private void removeFromIndexes(Long id) {
+        virtualPoolAggregateIndex.remove(id);
+        virtualPoolHierarchy.remove(id);
+        virtualPoolMembershipIndex.remove(id);
+    }
+
+    /**
+     * 从聚合索引填充虚拟池的聚合值
+     */
+    private void fillAggregatedStatus(VirtualPoolDTO virtualPool) {
+        VirtualPoolAggregateIndex.Snapshot snapshot = virtualPoolAggregateIndex.get(virtualPool.getId());
+        if (snapshot == null) {
+            return;
+        }
+        
+        virtualPool.setAggregatedValidCount(snapshot.getValidCount());
+        virtualPool.setAggregatedInvalidCount(snapshot.getInvalidCount());
+        virtualPool.setAggregatedCoolingCount(snapshot.getCoolingCount());
+        virtualPool.setAggregatedTotalCount(snapshot.getTotalCount());
+        virtualPool.setAggregatedPressure(snapshot.getPressure());
+        virtualPool.setAggregatedMetrics(snapshot.getMetrics());
+    }
+
     /**
      * 将实体转换为DTO
      */
@@ -590,19 +777,33 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         // 转换JSON字段
         dto.setPoolIds(BeanUtils.jsonToLongList(virtualPool.getPoolIds()));
         dto.setWeightConfig(BeanUtils.jsonToMap(virtualPool.getWeightConfig()));
+        dto.setVirtualPoolIds(BeanUtils.jsonToLongList(virtualPool.getVirtualPoolIds()));
+        dto.setMetricFormulas(BeanUtils.jsonToMap(virtualPool.getMetricFormulas()));
         
         // 获取号池名称列表
         if (dto.getPoolIds() != null && !dto.getPoolIds().isEmpty()) {
             List<String> poolNames = new ArrayList<>();
             for (Long poolId : dto.getPoolIds()) {
-                Pool pool = poolMapper.selectById(poolId);
-                if (pool != null) {
-                    poolNames.add(pool.getName());
+                String poolName = poolCatalog.getPoolName(poolId);
+                if (poolName != null) {
+                    poolNames.add(poolName);
                 }
             }
             dto.setPoolNames(poolNames);
         }
         
+        // 获取下级虚拟池名称列表
+        if (!dto.getVirtualPoolIds().isEmpty()) {
+            List<String> virtualPoolNames = new ArrayList<>();
+            for (Long childId : dto.getVirtualPoolIds()) {
+                VirtualPool child = poolCatalog.getVirtualPool(childId);
+                if (child != null) {
+                    virtualPoolNames.add(child.getName());
+                }
+            }
+            dto.setVirtualPoolNames(virtualPoolNames);
+        }
+        
         return dto;
     }
 
@@ -620,6 +821,8 @@ public class VirtualPoolServiceImpl extends ServiceImpl<VirtualPoolMapper, Virtu
         // 转换JSON字段
         virtualPool.setPoolIds(BeanUtils.longListToJson(dto.getPoolIds()));
         virtualPool.setWeightConfig(BeanUtils.mapToJson(dto.getWeightConfig()));
+        virtualPool.setVirtualPoolIds(BeanUtils.longListToJson(dto.getVirtualPoolIds()));
+        virtualPool.setMetricFormulas(BeanUtils.mapToJson(dto.getMetricFormulas()));
         
         return virtualPool;
     }
@@ -0,0 +1,335 @@
+package com.zjc.task;
+
+import com.zjc.common.PoolPriority;
+import com.zjc.config.AppConfig;
+import com.zjc.dto.PoolDTO;
+import com.zjc.dto.PoolStatusDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 号池采集频率策略
+ * 每个号池按自己的采集间隔到期采集，间隔初始为号池配置的更新频率。
+ * 开启自适应采样时，根据最近压力值的变化斜率和波动调整间隔：变化明显时缩短，持续平稳时逐步拉长，
+ * 始终限制在配置的上下限内；未开启时直接使用号池配置的间隔。所有号池的预计调用量超过全局预算时，按优先级从高到低分配预算：
+ * 关键号池始终按原间隔采集，预算不足的优先级按比例拉长间隔。到期号池按优先级、到期时间的顺序发出
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class AdaptiveSamplingPolicy {
+
+    /**
+     * 波动统计的平滑系数
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * 活跃度高于该值（压力百分点）时缩短间隔
+     */
+    private static final double HIGH_ACTIVITY = 5.0;
+
+    /**
+     * 活跃度低于该值（压力百分点）时拉长间隔
+     */
+    private static final double LOW_ACTIVITY = 1.0;
+
+    /**
+     * 缩短间隔的倍数
+     */
+    private static final double SHRINK_RATIO = 0.5;
+
+    /**
+     * 拉长间隔的倍数
+     */
+    private static final double GROW_RATIO = 1.25;
+
+    /**
+     * 过载时间隔最多拉长的倍数
+     */
+    private static final double MAX_DEGRADE_FACTOR = 10.0;
+
+    /**
+     * 采集延迟均值的平滑系数
+     */
+    private static final double LAG_ALPHA = 0.2;
+
+    private static final Comparator<SamplingState> DISPATCH_ORDER = Comparator
+            .comparingInt((SamplingState s) -> s.priority.getRank())
+            .thenComparingLong(s -> s.nextDue);
+
+    @Autowired
+    private AppConfig appConfig;
+
+    /**
+     * key: 号池ID, value: 采样状态
+     */
+    private final Map<Long, SamplingState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 各优先级当前的间隔拉伸倍数，下标为优先级排序值
+     */
+    private final double[] degradeFactors = new double[PoolPriority.values().length];
+
+    /**
+     * 各优先级的采集延迟统计，下标为优先级排序值
+     */
+    private final LagStats[] lagStats = new LagStats[PoolPriority.values().length];
+
+    public AdaptiveSamplingPolicy() {
+        Arrays.fill(degradeFactors, 1.0);
+        for (int i = 0; i < lagStats.length; i++) {
+            lagStats[i] = new LagStats();
+        }
+    }
+
+    /**
+     * 选出到期需要采集的号池，并预约它们的下一次采集时间
+     *
+     * @param pools 候选号池
+     * @param now 当前时间（毫秒）
+     * @return 到期的号池，按优先级、到期时间排序
+     */
+    public synchronized List<PoolDTO> selectDue(List<PoolDTO> pools, long now) {
+        Set<Long> present = new HashSet<>();
+        double[] callsPerMinute = new double[degradeFactors.length];
+        for (PoolDTO pool : pools) {
+            present.add(pool.getId());
+            SamplingState state = states.computeIfAbsent(pool.getId(), id -> new SamplingState());
+            state.pool = pool;
+            state.priority = PoolPriority.of(pool.getPriority());
+            state.baseSeconds = baseInterval(pool);
+            if (!appConfig.getCollection().isAdaptiveSampling()) {
+                // 未开启自适应时严格按号池配置的频率采集，上下限只约束自适应调整
+                state.intervalSeconds = Math.max(1, state.baseSeconds);
+            } else if (state.intervalSeconds <= 0) {
+                state.intervalSeconds = clamp(state.baseSeconds);
+            }
+            callsPerMinute[state.priority.getRank()] += 60.0 / state.intervalSeconds;
+        }
+        states.keySet().retainAll(present);
+        allocateBudget(callsPerMinute);
+
+        List<SamplingState> due = new ArrayList<>();
+        for (PoolDTO pool : pools) {
+            SamplingState state = states.get(pool.getId());
+            if (state.nextDue <= now) {
+                due.add(state);
+            }
+        }
+        due.sort(DISPATCH_ORDER);
+
+        List<PoolDTO> result = new ArrayList<>(due.size());
+        for (SamplingState state : due) {
+            // 首次采集没有预约时间，不计延迟
+            state.dueAt = state.nextDue > 0 ? state.nextDue : now;
+            state.nextDue = now + (long) (state.intervalSeconds * degradeFactors[state.priority.getRank()] * 1000);
+            result.add(state.pool);
+        }
+        return result;
+    }
+
+    /**
+     * 按优先级从高到低分配全局预算，计算各优先级的间隔拉伸倍数
+     */
+    private void allocateBudget(double[] callsPerMinute) {
+        int budget = appConfig.getCollection().getMaxCallsPerMinute();
+        double remaining = budget;
+        for (int rank = 0; rank < callsPerMinute.length; rank++) {
+            double demand = callsPerMinute[rank];
+            if (budget <= 0 || rank == PoolPriority.CRITICAL.getRank() || demand <= remaining) {
+                degradeFactors[rank] = 1.0;
+                remaining -= demand;
+            } else {
+                degradeFactors[rank] = remaining > 0 ? Math.min(MAX_DEGRADE_FACTOR, demand / remaining) : MAX_DEGRADE_FACTOR;
+                remaining = 0;
+            }
+        }
+    }
+
+    /**
+     * 记录一次成功的采集，按压力变化调整该号池的采集间隔
+     */
+    public synchronized void onSample(PoolDTO pool, PoolStatusDTO status) {
+        SamplingState state = states.get(pool.getId());
+        if (state == null || status == null || status.getPressure() == null) {
+            return;
+        }
+
+        long time = status.getRecordTime() != null ? status.getRecordTime() : System.currentTimeMillis();
+        if (state.dueAt > 0) {
+            lagStats[state.priority.getRank()].record(Math.max(0, time - state.dueAt));
+            state.dueAt = 0;
+        }
+
+        double pressure = status.getPressure().doubleValue();
+        state.observe(pressure, time);
+
+        if (!appConfig.getCollection().isAdaptiveSampling() || !state.isWarm()) {
+            return;
+        }
+
+        double activity = state.activity();
+        int previous = state.intervalSeconds;
+        if (activity > HIGH_ACTIVITY) {
+            state.intervalSeconds = clamp((int) Math.round(previous * SHRINK_RATIO));
+        } else if (activity < LOW_ACTIVITY) {
+            state.intervalSeconds = clamp((int) Math.ceil(previous * GROW_RATIO));
+        }
+
+        if (state.intervalSeconds < previous) {
+            // 变化加剧时提前下一次采集，不等原先预约的时间
+            double factor = degradeFactors[state.priority.getRank()];
+            state.nextDue = Math.min(state.nextDue, time + (long) (state.intervalSeconds * factor * 1000));
+        }
+        if (state.intervalSeconds != previous) {
+            log.debug("号池采集间隔调整, poolId: {}, 活跃度: {}, 间隔: {}s -> {}s",
+                    pool.getId(), String.format("%.2f", activity), previous, state.intervalSeconds);
+        }
+    }
+
+    /**
+     * 获取采集频率统计
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<Long, Map<String, Object>> pools = new LinkedHashMap<>();
+        double[] callsPerMinute = new double[degradeFactors.length];
+        int[] poolCounts = new int[degradeFactors.length];
+        for (Map.Entry<Long, SamplingState> entry : states.entrySet()) {
+            SamplingState state = entry.getValue();
+            int rank = state.priority.getRank();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("priority", state.priority.getCode());
+            item.put("baseIntervalSeconds", state.baseSeconds);
+            item.put("intervalSeconds", state.intervalSeconds);
+            item.put("effectiveIntervalSeconds", Math.round(state.intervalSeconds * degradeFactors[rank]));
+            item.put("activity", state.isWarm() ? state.activity() : null);
+            item.put("nextDue", state.nextDue);
+            pools.put(entry.getKey(), item);
+            poolCounts[rank]++;
+            if (state.intervalSeconds > 0) {
+                callsPerMinute[rank] += 60.0 / state.intervalSeconds / degradeFactors[rank];
+            }
+        }
+
+        Map<String, Map<String, Object>> priorities = new LinkedHashMap<>();
+        for (PoolPriority priority : PoolPriority.values()) {
+            int rank = priority.getRank();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("pools", poolCounts[rank]);
+            item.put("callsPerMinute", Math.round(callsPerMinute[rank]));
+            item.put("degradeFactor", degradeFactors[rank]);
+            item.putAll(lagStats[rank].toMap());
+            priorities.put(priority.getCode(), item);
+        }
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("adaptive", appConfig.getCollection().isAdaptiveSampling());
+        statistics.put("callsPerMinute", Math.round(Arrays.stream(callsPerMinute).sum()));
+        statistics.put("maxCallsPerMinute", appConfig.getCollection().getMaxCallsPerMinute());
+        statistics.put("priorities", priorities);
+        statistics.put("pools", pools);
+        return statistics;
+    }
+
+    private int baseInterval(PoolDTO pool) {
+        Integer frequency = pool.getUpdateFrequency();
+        return frequency != null && frequency > 0 ? frequency : appConfig.getCollection().getDefaultFrequency();
+    }
+
+    private int clamp(int seconds) {
+        AppConfig.Collection collection = appConfig.getCollection();
+        int min = Math.max(1, collection.getMinIntervalSeconds());
+        int max = Math.max(min, collection.getMaxIntervalSeconds());
+        return Math.max(min, Math.min(max, seconds));
+    }
+
+    /**
+     * 单个号池的采样状态
+     */
+    private static final class SamplingState {
+
+        private PoolDTO pool;
+        private PoolPriority priority = PoolPriority.NORMAL;
+        private long dueAt;
+        private int baseSeconds;
+        private int intervalSeconds;
+        private long nextDue;
+
+        private int samples;
+        private double lastPressure;
+        private long lastTime;
+        private double mean;
+        private double variance;
+        private double slope;
+
+        void observe(double pressure, long time) {
+            if (samples > 0 && time > lastTime) {
+                // 斜率按每分钟的压力变化计算
+                double perMinute = Math.abs(pressure - lastPressure) / ((time - lastTime) / 60000.0);
+                slope = samples == 1 ? perMinute : slope * (1 - ALPHA) + perMinute * ALPHA;
+            }
+            if (samples == 0) {
+                mean = pressure;
+            } else {
+                double diff = pressure - mean;
+                mean += ALPHA * diff;
+                variance = (1 - ALPHA) * (variance + ALPHA * diff * diff);
+            }
+            lastPressure = pressure;
+            lastTime = time;
+            samples++;
+        }
+
+        boolean isWarm() {
+            return samples >= 3;
+        }
+
+        /**
+         * 活跃度：平滑后的变化斜率与波动标准差之和
+         */
+        double activity() {
+            return slope + Math.sqrt(variance);
+        }
+    }
+
+    /**
+     * 单个优先级的采集延迟统计，延迟为采集完成时间与预约时间之差
+     */
+    private static final class LagStats {
+
+        private long samples;
+        private double averageMillis;
+        private long lastMillis;
+        private long maxMillis;
+
+        void record(long lagMillis) {
+            averageMillis = samples == 0 ? lagMillis : averageMillis * (1 - LAG_ALPHA) + lagMillis * LAG_ALPHA;
+            samples++;
+            lastMillis = lagMillis;
+            maxMillis = Math.max(maxMillis, lagMillis);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("samples", samples);
+            map.put("avgLagMs", Math.round(averageMillis));
+            map.put("lastLagMs", lastMillis);
+            map.put("maxLagMs", maxMillis);
+            return map;
+        }
+    }
+}
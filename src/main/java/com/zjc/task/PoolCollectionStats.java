@@ -0,0 +1,63 @@
+package com.zjc.task;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个号池的采集统计
+ * 
+ * @author zjc
+ * @since 2024-01-06
+ */
+final class PoolCollectionStats {
+
+    private long runs;
+    private long overruns;
+    private long deadlineCancels;
+    private long lastDurationMs;
+    private long maxDurationMs;
+    private long lastFinishTime;
+
+    /**
+     * 记录一次完成的采集（包括被取消的）
+     */
+    synchronized void recordRun(long durationMs) {
+        runs++;
+        lastDurationMs = durationMs;
+        maxDurationMs = Math.max(maxDurationMs, durationMs);
+        lastFinishTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次因上一次采集尚未完成而跳过的采集
+     */
+    synchronized void recordOverrun() {
+        overruns++;
+    }
+
+    /**
+     * 记录一次到达截止时间被取消的采集
+     */
+    synchronized void recordDeadlineCancel() {
+        deadlineCancels++;
+    }
+
+    synchronized long getOverruns() {
+        return overruns;
+    }
+
+    synchronized long getDeadlineCancels() {
+        return deadlineCancels;
+    }
+
+    synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("runs", runs);
+        map.put("overruns", overruns);
+        map.put("deadlineCancels", deadlineCancels);
+        map.put("lastDurationMs", lastDurationMs);
+        map.put("maxDurationMs", maxDurationMs);
+        map.put("lastFinishTime", lastFinishTime);
+        return map;
+    }
+}
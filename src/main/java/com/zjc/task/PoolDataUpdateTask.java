@@ -1,34 +1,47 @@
 package com.zjc.task;
 
+import com.zjc.cache.PoolCatalog;
+import com.zjc.cache.PoolUpdateStatusLedger;
+import com.zjc.cache.VirtualPoolAggregateIndex;
+import com.zjc.cluster.CollectorCluster;
+import com.zjc.common.PoolPriority;
+import com.zjc.config.AppConfig;
 import com.zjc.datasource.DataSourceManager;
 import com.zjc.dto.PoolDTO;
 import com.zjc.dto.PoolStatusDTO;
-import com.zjc.service.PoolService;
 import com.zjc.service.PoolStatusService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 号池数据更新定时任务
+ * 只读副本（app.replica.enabled）不采集
  * 
  * @author zjc
  * @since 2024-01-06
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(prefix = "app.replica", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class PoolDataUpdateTask {
 
     @Autowired
-    private PoolService poolService;
+    private PoolCatalog poolCatalog;
 
     @Autowired
     private PoolStatusService poolStatusService;
@@ -36,84 +49,213 @@ public class PoolDataUpdateTask {
     @Autowired
     private DataSourceManager dataSourceManager;
 
+    @Autowired
+    private VirtualPoolAggregateIndex virtualPoolAggregateIndex;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private AdaptiveSamplingPolicy samplingPolicy;
+
+    @Autowired
+    private PoolUpdateStatusLedger poolUpdateStatusLedger;
+
+    @Autowired
+    private CollectorCluster collectorCluster;
+
     /**
-     * 线程池，用于并发更新号池数据
+     * 正在进行的号池采集，保证同一号池同时只有一次采集
+     * key: 号池ID, value: 采集完成信号
      */
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+    private final Map<Long, CompletableFuture<Void>> runningCollections = new ConcurrentHashMap<>();
 
     /**
-     * 定时更新所有号池状态数据
-     * 每分钟执行一次
+     * key: 号池ID, value: 采集统计
      */
-    @Scheduled(fixedRate = 60000) // 60秒
+    private final Map<Long, PoolCollectionStats> collectionStats = new ConcurrentHashMap<>();
+
+    /**
+     * 定时更新到期号池的状态数据
+     * 按app.collection.tick-millis检查一次，各号池按自己的采集间隔到期采集；
+     * 只发起采集不等待完成，不占用调度线程
+     */
+    @Scheduled(fixedRateString = "${app.collection.tick-millis:5000}")
     public void updateAllPoolStatus() {
-        log.debug("开始定时更新所有号池状态数据");
+        log.debug("开始定时更新到期号池状态数据");
         
         try {
-            // 获取所有启用的号池
-            List<PoolDTO> pools = poolService.getEnabledPools();
-            if (pools.isEmpty()) {
-                log.debug("没有启用的号池，跳过更新");
-                return;
-            }
-            
-            log.info("开始更新 {} 个号池的状态数据", pools.size());
-            
-            // 并发更新所有号池状态
-            CompletableFuture<?>[] futures = pools.stream()
-                .map(pool -> CompletableFuture.runAsync(() -> updateSinglePoolStatus(pool), executorService))
-                .toArray(CompletableFuture[]::new);
-            
-            // 等待所有任务完成，最多等待30秒
-            CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
-            
-            log.info("所有号池状态数据更新完成");
-            
+            startCollectionCycle(false);
         } catch (Exception e) {
             log.error("定时更新号池状态数据失败", e);
         }
     }
 
+    /**
+     * 发起一轮采集
+     * 
+     * @param all 是否采集所有号池，否则只采集到期的号池
+     * @return 本轮采集完成信号
+     */
+    private CompletableFuture<Void> startCollectionCycle(boolean all) {
+        // 直接读取目录中的共享号池，不带最后更新状态，数据源绑定按对象复用
+        List<PoolDTO> pools = poolCatalog.getEnabledPools();
+        if (pools.isEmpty()) {
+            log.debug("没有启用的号池，跳过更新");
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        long start = System.currentTimeMillis();
+        // 集群模式下只采集本实例持有分片内的号池
+        List<PoolDTO> collectable = collectorCluster.filterOwned(pools).stream()
+            .filter(this::isCollectable)
+            .collect(Collectors.toList());
+        List<PoolDTO> due = samplingPolicy.selectDue(collectable, start);
+        if (all) {
+            due = collectable.stream()
+                .sorted(Comparator.comparingInt(pool -> PoolPriority.of(pool.getPriority()).getRank()))
+                .collect(Collectors.toList());
+        }
+        if (due.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        log.info("开始更新 {} 个号池的状态数据", due.size());
+        List<CompletableFuture<Void>> collections = collect(due);
+        
+        return CompletableFuture.allOf(collections.toArray(new CompletableFuture[0]))
+            .whenComplete((v, e) -> {
+                // 本周期内的变化沿虚拟池层级统一向上传播一次
+                virtualPoolAggregateIndex.flush();
+                // 各号池的最后更新状态一次批量写入
+                poolUpdateStatusLedger.flush();
+                log.info("所有号池状态数据更新完成, 采集号池数: {}, 耗时: {}ms",
+                    collections.size(), System.currentTimeMillis() - start);
+            });
+    }
+
+    /**
+     * 并发采集号池状态
+     * 支持批量的数据源按组一次获取；上一次采集尚未完成的号池跳过；
+     * 到达截止时间（app.collection.timeout）仍未返回的采集被取消，不会延续到下一轮
+     * 
+     * @param pools 号池列表
+     * @return 已发起采集的完成信号，不会异常结束
+     */
+    private List<CompletableFuture<Void>> collect(List<PoolDTO> pools) {
+        List<PoolDTO> started = new ArrayList<>();
+        Map<Long, CompletableFuture<Void>> signals = new HashMap<>();
+        for (PoolDTO pool : pools) {
+            CompletableFuture<Void> signal = new CompletableFuture<>();
+            if (runningCollections.putIfAbsent(pool.getId(), signal) != null) {
+                statsOf(pool.getId()).recordOverrun();
+                log.warn("号池上一次采集尚未完成，本次跳过, poolId: {}, poolName: {}", pool.getId(), pool.getName());
+                continue;
+            }
+            started.add(pool);
+            signals.put(pool.getId(), signal);
+        }
+        
+        Map<Long, CompletableFuture<PoolStatusDTO>> statuses;
+        try {
+            statuses = dataSourceManager.getPoolStatuses(started);
+        } catch (RuntimeException e) {
+            signals.forEach((poolId, signal) -> {
+                poolUpdateStatusLedger.recordFailure(poolId, e.getMessage());
+                finish(poolId, signal);
+            });
+            throw e;
+        }
+        
+        long deadlineSeconds = Math.max(1, appConfig.getCollection().getTimeout());
+        List<CompletableFuture<Void>> result = new ArrayList<>();
+        for (PoolDTO pool : started) {
+            CompletableFuture<Void> signal = signals.get(pool.getId());
+            long startNanos = System.nanoTime();
+            statuses.get(pool.getId())
+                .orTimeout(deadlineSeconds, TimeUnit.SECONDS)
+                .handle((status, e) -> {
+                    PoolCollectionStats stats = statsOf(pool.getId());
+                    if (e != null) {
+                        stats.recordDeadlineCancel();
+                        poolUpdateStatusLedger.recordFailure(pool.getId(), "采集超过截止时间: " + deadlineSeconds + "s");
+                        log.warn("号池采集超过截止时间已取消, poolId: {}, poolName: {}, 截止时间: {}s",
+                            pool.getId(), pool.getName(), deadlineSeconds);
+                    } else {
+                        saveStatus(pool, status);
+                        samplingPolicy.onSample(pool, status);
+                    }
+                    stats.recordRun((System.nanoTime() - startNanos) / 1_000_000);
+                    return null;
+                })
+                .whenComplete((v, e) -> finish(pool.getId(), signal));
+            result.add(signal);
+        }
+        return result;
+    }
+
+    private void finish(Long poolId, CompletableFuture<Void> signal) {
+        runningCollections.remove(poolId, signal);
+        signal.complete(null);
+    }
+
+    private PoolCollectionStats statsOf(Long poolId) {
+        return collectionStats.computeIfAbsent(poolId, id -> new PoolCollectionStats());
+    }
+
+    /**
+     * 检查号池是否需要采集
+     */
+    private boolean isCollectable(PoolDTO pool) {
+        // 检查号池是否启用
+        if (!pool.getEnabled()) {
+            log.debug("号池已禁用，跳过更新, poolId: {}", pool.getId());
+            return false;
+        }
+        
+        // 获取数据源配置
+        String dataSourceClass = pool.getDataSourceClass();
+        
+        if (dataSourceClass == null || dataSourceClass.trim().isEmpty()) {
+            log.warn("号池数据源类型为空，跳过更新, poolId: {}", pool.getId());
+            return false;
+        }
+        
+        return true;
+    }
+
     /**
      * 更新单个号池状态
      */
     private void updateSinglePoolStatus(PoolDTO pool) {
+        log.debug("开始更新号池状态, poolId: {}, poolName: {}", pool.getId(), pool.getName());
+        
+        if (!isCollectable(pool)) {
+            return;
+        }
+        
+        // 与定时采集走同一条路径，经过请求合并和熔断保护，等待时间受采集截止时间约束
+        collect(Collections.singletonList(pool)).forEach(CompletableFuture::join);
+    }
+
+    /**
+     * 保存获取到的号池状态
+     */
+    private void saveStatus(PoolDTO pool, PoolStatusDTO status) {
         try {
-            log.debug("开始更新号池状态, poolId: {}, poolName: {}", pool.getId(), pool.getName());
-            
-            // 检查号池是否启用
-            if (!pool.getEnabled()) {
-                log.debug("号池已禁用，跳过更新, poolId: {}", pool.getId());
-                return;
-            }
-            
-            // 获取数据源配置
-            String dataSourceClass = pool.getDataSourceClass();
-            Map<String, Object> dataSourceConfigMap = pool.getDataSourceConfig();
-            
-            if (dataSourceClass == null || dataSourceClass.trim().isEmpty()) {
-                log.warn("号池数据源类型为空，跳过更新, poolId: {}", pool.getId());
-                return;
-            }
-            
-            // 从数据源获取最新状态
-            PoolStatusDTO status = dataSourceManager.getPoolStatus(
-                pool.getId(),
-                pool.getName(),
-                dataSourceClass,
-                dataSourceConfigMap
-            );
-            
             if (status != null) {
                 // 保存状态数据
                 poolStatusService.savePoolStatus(status);
+                poolUpdateStatusLedger.recordSuccess(pool.getId());
                 log.debug("号池状态更新成功, poolId: {}, validCount: {}, totalCount: {}, pressure: {}%", 
                     pool.getId(), status.getValidCount(), status.getTotalCount(), status.getPressure());
             } else {
+                poolUpdateStatusLedger.recordFailure(pool.getId(), "获取号池状态数据失败");
                 log.warn("获取号池状态数据失败, poolId: {}", pool.getId());
             }
             
         } catch (Exception e) {
+            poolUpdateStatusLedger.recordFailure(pool.getId(), "保存号池状态失败: " + e.getMessage());
             log.error("更新号池状态失败, poolId: {}, poolName: {}", pool.getId(), pool.getName(), e);
         }
     }
@@ -147,18 +289,17 @@ public class PoolDataUpdateTask {
         log.debug("开始检查数据源连接状态");
         
         try {
-            List<PoolDTO> pools = poolService.getEnabledPools();
+            List<PoolDTO> pools = poolCatalog.getEnabledPools();
             
             for (PoolDTO pool : pools) {
                 try {
                     String dataSourceClass = pool.getDataSourceClass();
-                    Map<String, Object> dataSourceConfigMap = pool.getDataSourceConfig();
                     
                     if (dataSourceClass == null || dataSourceClass.trim().isEmpty()) {
                         continue;
                     }
                     
-                    boolean connected = dataSourceManager.checkConnection(dataSourceClass, dataSourceConfigMap);
+                    boolean connected = dataSourceManager.checkConnection(pool);
                     
                     if (!connected) {
                         log.warn("号池数据源连接异常, poolId: {}, poolName: {}, dataSourceClass: {}",
@@ -182,7 +323,7 @@ public class PoolDataUpdateTask {
         log.info("手动触发更新号池状态, poolId: {}", poolId);
         
         try {
-            PoolDTO pool = poolService.getPoolById(poolId);
+            PoolDTO pool = poolCatalog.getPool(poolId);
             if (pool == null) {
                 log.warn("号池不存在, poolId: {}", poolId);
                 return;
@@ -203,8 +344,8 @@ public class PoolDataUpdateTask {
         log.info("手动触发更新所有号池状态");
         
         try {
-            updateAllPoolStatus();
-            log.info("手动更新所有号池状态完成");
+            startCollectionCycle(true);
+            log.info("手动更新所有号池状态已启动");
             
         } catch (Exception e) {
             log.error("手动更新所有号池状态失败", e);
@@ -215,9 +356,39 @@ public class PoolDataUpdateTask {
      * 获取任务执行统计信息
      */
     public String getTaskStatistics() {
-        return String.format("线程池状态 - 活跃线程: %d 常驻线程: %d, 队列大小: %d",
-            ((java.util.concurrent.ThreadPoolExecutor) executorService).getActiveCount(),
-            ((java.util.concurrent.ThreadPoolExecutor) executorService).getCorePoolSize(),
-            ((java.util.concurrent.ThreadPoolExecutor) executorService).getQueue().size());
+        Map<String, Long> coalescing = dataSourceManager.getCoalescingStatistics();
+        String bulkheads = dataSourceManager.getBulkheadStatistics().entrySet().stream()
+            .map(entry -> String.format("%s 并发: %s/%s 排队: %s 拒绝: %s", entry.getKey(),
+                entry.getValue().get("inFlight"), entry.getValue().get("concurrencyLimit"),
+                entry.getValue().get("queueDepth"), entry.getValue().get("rejected")))
+            .collect(Collectors.joining(", "));
+        long overruns = collectionStats.values().stream().mapToLong(PoolCollectionStats::getOverruns).sum();
+        long deadlineCancels = collectionStats.values().stream().mapToLong(PoolCollectionStats::getDeadlineCancels).sum();
+        return String.format("采集 - 进行中: %d, 跳过: %d, 超时取消: %d; 数据源隔离舱 - %s; 请求合并 - 请求数: %d, 上游调用数: %d, 去重数: %d",
+            runningCollections.size(), overruns, deadlineCancels,
+            bulkheads.isEmpty() ? "无" : bulkheads,
+            coalescing.get("requests"), coalescing.get("upstreamCalls"), coalescing.get("deduplicated"));
+    }
+
+    /**
+     * 获取采集频率统计
+     */
+    public Map<String, Object> getSamplingStatistics() {
+        return samplingPolicy.getStatistics();
+    }
+
+    /**
+     * 获取各号池的采集统计
+     * 
+     * @return key: 号池ID, value: 统计信息
+     */
+    public Map<Long, Map<String, Object>> getCollectionStatistics() {
+        Map<Long, Map<String, Object>> statistics = new LinkedHashMap<>();
+        collectionStats.forEach((poolId, stats) -> {
+            Map<String, Object> item = stats.toMap();
+            item.put("running", runningCollections.containsKey(poolId));
+            statistics.put(poolId, item);
+        });
+        return statistics;
     }
 }
\ No newline at end of file
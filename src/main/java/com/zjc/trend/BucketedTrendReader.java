@@ -0,0 +1,135 @@
+package com.zjc.trend;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.zjc.dto.PoolStatusBucketDTO;
+import com.zjc.entity.PoolStatus;
+import com.zjc.mapper.PoolStatusMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按时间网格读取号池状态历史
+ * 每个号池的序列以网格起点之前的最后一条样本作为种子，便于调用方向后沿用数值
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+@Slf4j
+@Component
+public class BucketedTrendReader {
+
+    /**
+     * 单个号池读取的最长等待时间（秒）
+     */
+    private static final int READ_TIMEOUT_SECONDS = 10;
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    @Autowired
+    private PoolStatusMapper poolStatusMapper;
+
+    /**
+     * 并行读取线程池
+     * 线程数小于数据库连接池大小，给采集任务留出连接
+     */
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(3, r -> {
+        Thread thread = new Thread(r, "trend-reader-" + THREAD_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 读取单个号池在网格内的分桶数据
+     *
+     * @param poolId 号池ID
+     * @param grid 时间网格
+     * @return 按时间升序的分桶数据，第一个元素可能是网格起点之前的种子样本
+     */
+    public List<PoolStatusBucketDTO> read(Long poolId, TimeGrid grid) {
+        List<PoolStatusBucketDTO> result = new ArrayList<>();
+
+        PoolStatusBucketDTO seed = readSeed(poolId, grid.getStart());
+        if (seed != null) {
+            result.add(seed);
+        }
+
+        result.addAll(poolStatusMapper.selectBucketedHistory(poolId, grid.getStart(), grid.getEnd(), grid.getStep()));
+        return result;
+    }
+
+    /**
+     * 并行读取多个号池在网格内的分桶数据
+     * 单个号池读取失败时返回空序列，不影响其他号池
+     *
+     * @param poolIds 号池ID列表
+     * @param grid 时间网格
+     * @return key: 号池ID, value: 分桶数据，顺序与poolIds一致
+     */
+    public Map<Long, List<PoolStatusBucketDTO>> readAll(List<Long> poolIds, TimeGrid grid) {
+        Map<Long, CompletableFuture<List<PoolStatusBucketDTO>>> futures = new LinkedHashMap<>();
+        for (Long poolId : poolIds) {
+            futures.putIfAbsent(poolId, CompletableFuture.supplyAsync(() -> read(poolId, grid), readExecutor));
+        }
+
+        Map<Long, List<PoolStatusBucketDTO>> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, CompletableFuture<List<PoolStatusBucketDTO>>> entry : futures.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.getValue().cancel(true);
+                result.put(entry.getKey(), new ArrayList<>());
+            } catch (Exception e) {
+                log.error("读取号池分桶趋势数据失败, poolId: {}", entry.getKey(), e);
+                entry.getValue().cancel(true);
+                result.put(entry.getKey(), new ArrayList<>());
+            }
+        }
+
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readExecutor.shutdownNow();
+    }
+
+    /**
+     * 读取指定时间之前的最后一条样本
+     */
+    private PoolStatusBucketDTO readSeed(Long poolId, long before) {
+        LambdaQueryWrapper<PoolStatus> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(PoolStatus::getPoolId, poolId)
+                   .lt(PoolStatus::getRecordTime, before)
+                   .orderByDesc(PoolStatus::getRecordTime)
+                   .last("LIMIT 1");
+
+        PoolStatus status = poolStatusMapper.selectOne(queryWrapper);
+        if (status == null) {
+            return null;
+        }
+
+        PoolStatusBucketDTO seed = new PoolStatusBucketDTO();
+        seed.setPoolId(poolId);
+        seed.setBucketTime(status.getRecordTime());
+        seed.setValidCount(status.getValidCount());
+        seed.setInvalidCount(status.getInvalidCount());
+        seed.setCoolingCount(status.getCoolingCount());
+        seed.setTotalCount(status.getTotalCount());
+        seed.setPressure(status.getPressure() != null ? status.getPressure().doubleValue() : null);
+        return seed;
+    }
+}
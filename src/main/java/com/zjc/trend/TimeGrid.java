@@ -0,0 +1,111 @@
+package com.zjc.trend;
+
+/**
+ * 趋势查询的时间网格
+ * 起点按桶宽度向下对齐，保证不同号池、不同请求的桶边界一致
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class TimeGrid {
+
+    /**
+     * 最小桶宽度（毫秒）
+     */
+    private static final long MIN_STEP = 1000L;
+
+    private final long start;
+    private final long step;
+    private final int points;
+
+    private TimeGrid(long start, long step, int points) {
+        this.start = start;
+        this.step = step;
+        this.points = points;
+    }
+
+    /**
+     * 创建时间网格
+     * 点数（按对齐后的起点计算）超过上限时按上限等比放大桶宽度（取整到秒）
+     *
+     * @param startTime 开始时间戳
+     * @param endTime 结束时间戳
+     * @param stepMs 期望的桶宽度（毫秒）
+     * @param maxPoints 点数上限
+     * @return 时间网格
+     */
+    public static TimeGrid of(long startTime, long endTime, long stepMs, int maxPoints) {
+        if (endTime <= startTime) {
+            throw new IllegalArgumentException("结束时间必须晚于开始时间");
+        }
+
+        long step = Math.max(MIN_STEP, stepMs);
+        while (true) {
+            // 先对齐起点再计算点数，对齐后向前延伸的部分也计入上限
+            long alignedStart = Math.floorDiv(startTime, step) * step;
+            long span = endTime - alignedStart;
+            if (maxPoints <= 0 || ceilDiv(span, step) <= maxPoints) {
+                return new TimeGrid(alignedStart, step, (int) ceilDiv(span, step));
+            }
+            // 放大后的桶宽度严格变大，重新对齐后最多再放大几次
+            step = ceilDiv(ceilDiv(span, maxPoints), MIN_STEP) * MIN_STEP;
+        }
+    }
+
+    /**
+     * 第一个桶的开始时间戳
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * 网格结束时间戳（不含）
+     */
+    public long getEnd() {
+        return start + step * points;
+    }
+
+    /**
+     * 桶宽度（毫秒）
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * 桶数量
+     */
+    public int getPoints() {
+        return points;
+    }
+
+    /**
+     * 时间戳所在桶的下标，可能越界（早于起点为负数）
+     */
+    public int indexOf(long timestamp) {
+        return (int) Math.floorDiv(timestamp - start, step);
+    }
+
+    /**
+     * 第index个桶的开始时间戳
+     */
+    public long timeAt(int index) {
+        return start + step * index;
+    }
+
+    /**
+     * 共享时间轴
+     */
+    public long[] timestamps() {
+        long[] timestamps = new long[points];
+        for (int i = 0; i < points; i++) {
+            timestamps[i] = timeAt(i);
+        }
+        return timestamps;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
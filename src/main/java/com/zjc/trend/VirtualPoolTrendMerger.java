@@ -0,0 +1,158 @@
+package com.zjc.trend;
+
+import com.zjc.aggregate.AggregationStrategy;
+import com.zjc.aggregate.StatusAggregator;
+import com.zjc.aggregate.WeightVector;
+import com.zjc.dto.PoolStatusBucketDTO;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 虚拟聚合池趋势合并器
+ * 对成员号池按时间升序的分桶序列做k路归并，每个成员保留最近一个桶的值（空桶沿用），
+ * 策略可逆时归并过程中增量维护累加器，每个桶的聚合结果O(1)得出；不可逆时按当前成员值重新计算
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+public final class VirtualPoolTrendMerger {
+
+    private VirtualPoolTrendMerger() {
+    }
+
+    /**
+     * 合并成员号池的分桶序列
+     *
+     * @param grid 时间网格
+     * @param memberSeries 成员号池的分桶序列，每个序列按时间升序，第一个元素可能是网格起点之前的种子样本
+     * @param strategy 聚合策略
+     * @param weights 与memberSeries顺序一致的权重向量，策略不使用权重时传null
+     * @return 按时间升序的趋势数据，只包含有成员数据变化的桶
+     */
+    public static List<Map<String, Object>> merge(TimeGrid grid, List<List<PoolStatusBucketDTO>> memberSeries,
+                                                  AggregationStrategy strategy, WeightVector weights) {
+        StatusAggregator aggregator = new StatusAggregator(strategy);
+        boolean invertible = aggregator.isInvertible();
+
+        List<Cursor> cursors = new ArrayList<>(memberSeries.size());
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, memberSeries.size()),
+                (a, b) -> Integer.compare(a.index, b.index));
+        for (int i = 0; i < memberSeries.size(); i++) {
+            Cursor cursor = new Cursor(memberSeries.get(i), grid, weights != null ? weights.get(i) : WeightVector.DEFAULT_WEIGHT);
+            cursors.add(cursor);
+            if (cursor.valid()) {
+                queue.add(cursor);
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            int index = queue.peek().index;
+
+            // 取出落在同一个桶内的所有成员样本，用新值替换旧值
+            while (!queue.isEmpty() && queue.peek().index == index) {
+                Cursor cursor = queue.poll();
+                if (invertible && cursor.hasValue) {
+                    aggregator.remove(cursor.validCount, cursor.invalidCount, cursor.coolingCount, cursor.totalCount, cursor.weight);
+                }
+                cursor.load();
+                if (invertible) {
+                    aggregator.add(cursor.validCount, cursor.invalidCount, cursor.coolingCount, cursor.totalCount, cursor.weight);
+                }
+
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            if (index >= grid.getPoints()) {
+                break;
+            }
+
+            // 不可逆的策略按当前生效的成员值重新计算
+            if (!invertible) {
+                aggregator.reset();
+                for (Cursor cursor : cursors) {
+                    if (cursor.hasValue) {
+                        aggregator.add(cursor.validCount, cursor.invalidCount, cursor.coolingCount, cursor.totalCount, cursor.weight);
+                    }
+                }
+            }
+
+            BigDecimal pressure = aggregator.getPressure();
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("recordTime", grid.timeAt(index));
+            row.put("validCount", aggregator.getValidCount());
+            row.put("invalidCount", aggregator.getInvalidCount());
+            row.put("coolingCount", aggregator.getCoolingCount());
+            row.put("totalCount", aggregator.getTotalCount());
+            row.put("pressure", pressure != null ? pressure : BigDecimal.ZERO);
+            row.put("poolCount", aggregator.getPoolCount());
+            result.add(row);
+        }
+
+        return result;
+    }
+
+    /**
+     * 单个成员序列的读取游标，同时保存该成员当前生效的值
+     */
+    private static final class Cursor {
+
+        private final List<PoolStatusBucketDTO> series;
+        private final TimeGrid grid;
+        private final double weight;
+        private int position;
+        private int index;
+
+        private boolean hasValue;
+        private int validCount;
+        private int invalidCount;
+        private int coolingCount;
+        private int totalCount;
+
+        Cursor(List<PoolStatusBucketDTO> series, TimeGrid grid, double weight) {
+            this.series = series;
+            this.grid = grid;
+            this.weight = weight;
+            this.position = -1;
+            advance();
+        }
+
+        boolean valid() {
+            return position < series.size();
+        }
+
+        /**
+         * 将当前样本设为该成员生效的值
+         */
+        void load() {
+            PoolStatusBucketDTO bucket = series.get(position);
+            hasValue = true;
+            validCount = bucket.getValidCount() != null ? bucket.getValidCount() : 0;
+            invalidCount = bucket.getInvalidCount() != null ? bucket.getInvalidCount() : 0;
+            coolingCount = bucket.getCoolingCount() != null ? bucket.getCoolingCount() : 0;
+            totalCount = bucket.getTotalCount() != null ? bucket.getTotalCount() : 0;
+        }
+
+        /**
+         * 移动到下一个样本，种子样本归入第一个桶
+         *
+         * @return 是否还有样本
+         */
+        boolean advance() {
+            position++;
+            if (position >= series.size()) {
+                return false;
+            }
+            index = Math.max(0, grid.indexOf(series.get(position).getBucketTime()));
+            return true;
+        }
+    }
+}
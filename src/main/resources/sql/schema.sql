@@ -11,6 +11,7 @@ CREATE TABLE IF NOT EXISTS pool (
     update_frequency INTEGER DEFAULT 60,
     display_fields TEXT,
     display_strategy VARCHAR(20) DEFAULT 'public',
+    priority VARCHAR(20) DEFAULT 'normal',
     enabled BOOLEAN DEFAULT 1,
     last_update_time INTEGER,
     last_update_status VARCHAR(20),
@@ -44,8 +45,10 @@ CREATE TABLE IF NOT EXISTS virtual_pool (
                                             name VARCHAR(100) NOT NULL,
     description TEXT,
     pool_ids TEXT NOT NULL,
+    virtual_pool_ids TEXT,
     aggregate_strategy VARCHAR(20) DEFAULT 'sum',
     weight_config TEXT,
+    metric_formulas TEXT,
     enabled BOOLEAN DEFAULT 1,
     display_order INTEGER DEFAULT 0,
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
@@ -53,6 +56,27 @@ CREATE TABLE IF NOT EXISTS virtual_pool (
     deleted INTEGER DEFAULT 0
     );
 
+-- 创建采集实例表（多实例分片采集）
+CREATE TABLE IF NOT EXISTS collector_instance (
+    instance_id VARCHAR(100) PRIMARY KEY,
+    heartbeat_time INTEGER NOT NULL,
+    start_time INTEGER NOT NULL
+    );
+
+-- 创建采集分片租约表（多实例分片采集）
+CREATE TABLE IF NOT EXISTS collector_lease (
+    shard_id INTEGER PRIMARY KEY,
+    owner_id VARCHAR(100),
+    lease_until INTEGER DEFAULT 0
+    );
+
+-- 创建变更信号表，写入实例在配置或状态数据变化后递增版本号，只读副本据此刷新内存缓存
+CREATE TABLE IF NOT EXISTS change_signal (
+    topic VARCHAR(50) PRIMARY KEY,
+    version INTEGER NOT NULL DEFAULT 0,
+    update_time INTEGER
+    );
+
 -- 创建索引
 CREATE INDEX IF NOT EXISTS idx_pool_enabled ON pool(enabled, deleted);
 CREATE INDEX IF NOT EXISTS idx_pool_display_strategy ON pool(display_strategy, deleted);
@@ -69,6 +93,11 @@ INSERT OR IGNORE INTO pool (id, name, description, data_source_class, update_fre
 (3, '测试号池', '测试环境专用号池', 'com.zjc.datasource.impl.MockPoolDataSourceService', 30, 'private', 1),
 (4, '紧急备用池', '紧急情况使用的备用号池', 'com.zjc.datasource.impl.MockPoolDataSourceService', 120, 'public', 1);
 
+-- 初始化变更信号
+INSERT OR IGNORE INTO change_signal (topic, version, update_time) VALUES
+('catalog', 0, 0),
+('status', 0, 0);
+
 -- 插入虚拟聚合池示例数据
 INSERT OR IGNORE INTO virtual_pool (id, name, description, pool_ids, aggregate_strategy, enabled, display_order) VALUES
 (1, '核心业务聚合池', '聚合: 主要业务号池 + 备用号池A', '[1,2]', 'sum', 1, 1),
@@ -0,0 +1,172 @@
+package com.zjc.cluster;
+
+import com.zjc.config.AppConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多实例分片采集协调测试
+ * 多个实例共用一个SQLite文件，直接调用心跳模拟调度
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+class CollectorClusterTest {
+
+    private static final int SHARD_COUNT = 16;
+
+    private static final long HEARTBEAT_MILLIS = 50L;
+
+    private static final long LEASE_MILLIS = 300L;
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + tempDir.resolve("cluster.db"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE collector_instance (instance_id VARCHAR(100) PRIMARY KEY, " +
+                "heartbeat_time INTEGER NOT NULL, start_time INTEGER NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE collector_lease (shard_id INTEGER PRIMARY KEY, " +
+                "owner_id VARCHAR(100), lease_until INTEGER DEFAULT 0)");
+    }
+
+    @Test
+    void singleInstanceClaimsAllShards() {
+        CollectorCluster a = member("a");
+        a.join();
+
+        assertEquals(SHARD_COUNT, ownedShards(a).size());
+        assertEquals(SHARD_COUNT, leasesOf("a"));
+        for (long poolId = 1; poolId <= 100; poolId++) {
+            assertTrue(a.isOwned(poolId));
+        }
+    }
+
+    @Test
+    void heartbeatRenewsLease() throws InterruptedException {
+        CollectorCluster a = member("a");
+        a.join();
+        long firstLease = leaseUntil("a");
+
+        Thread.sleep(HEARTBEAT_MILLIS);
+        a.heartbeat();
+
+        assertTrue(leaseUntil("a") > firstLease);
+        assertEquals(SHARD_COUNT, ownedShards(a).size());
+    }
+
+    @Test
+    void joiningInstanceTakesShardsReleasedByOwner() {
+        CollectorCluster a = member("a");
+        a.join();
+        CollectorCluster b = member("b");
+        b.join();
+
+        // a的租约仍有效，b要等a让出分片
+        assertTrue(ownedShards(b).isEmpty());
+        assertEquals(SHARD_COUNT, ownedShards(a).size());
+
+        a.heartbeat();
+        b.heartbeat();
+
+        Set<Integer> ownedByA = ownedShards(a);
+        Set<Integer> ownedByB = ownedShards(b);
+        assertFalse(ownedByA.isEmpty());
+        assertFalse(ownedByB.isEmpty());
+        Set<Integer> all = new HashSet<>(ownedByA);
+        all.addAll(ownedByB);
+        assertEquals(SHARD_COUNT, all.size());
+        assertEquals(SHARD_COUNT, ownedByA.size() + ownedByB.size());
+        for (long poolId = 1; poolId <= 100; poolId++) {
+            assertTrue(a.isOwned(poolId) ^ b.isOwned(poolId), "号池应只由一个实例采集: " + poolId);
+        }
+    }
+
+    @Test
+    void expiredLeasesAreTakenOver() throws InterruptedException {
+        CollectorCluster a = member("a");
+        a.join();
+        CollectorCluster b = member("b");
+        b.join();
+        assertTrue(ownedShards(b).isEmpty());
+
+        // a停止心跳但不释放租约，模拟进程崩溃
+        Thread.sleep(LEASE_MILLIS + HEARTBEAT_MILLIS);
+        assertFalse(a.isOwned(1L), "租约到期后本地不应再认为持有分片");
+
+        b.heartbeat();
+
+        assertEquals(SHARD_COUNT, ownedShards(b).size());
+        assertEquals(SHARD_COUNT, leasesOf("b"));
+        assertEquals(0, leasesOf("a"));
+    }
+
+    @Test
+    void leavingInstanceReleasesLeasesImmediately() {
+        CollectorCluster a = member("a");
+        a.join();
+        CollectorCluster b = member("b");
+        b.join();
+        a.heartbeat();
+        b.heartbeat();
+
+        a.leave();
+        assertEquals(0, leasesOf("a"));
+        assertFalse(a.isOwned(1L));
+
+        b.heartbeat();
+
+        assertEquals(SHARD_COUNT, ownedShards(b).size());
+    }
+
+    private CollectorCluster member(String instanceId) {
+        AppConfig appConfig = new AppConfig();
+        AppConfig.Cluster config = appConfig.getCluster();
+        config.setEnabled(true);
+        config.setInstanceId(instanceId);
+        config.setShardCount(SHARD_COUNT);
+        config.setVirtualNodes(50);
+        config.setHeartbeatMillis(HEARTBEAT_MILLIS);
+        config.setLeaseMillis(LEASE_MILLIS);
+
+        CollectorCluster cluster = new CollectorCluster();
+        ReflectionTestUtils.setField(cluster, "appConfig", appConfig);
+        ReflectionTestUtils.setField(cluster, "jdbcTemplate", jdbcTemplate);
+        return cluster;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Integer> ownedShards(CollectorCluster cluster) {
+        return (Set<Integer>) cluster.getStatistics().get("ownedShards");
+    }
+
+    private int leasesOf(String instanceId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM collector_lease WHERE owner_id = ? AND lease_until > ?",
+                Integer.class, instanceId, System.currentTimeMillis());
+        return count != null ? count : 0;
+    }
+
+    private long leaseUntil(String instanceId) {
+        Long leaseUntil = jdbcTemplate.queryForObject(
+                "SELECT MAX(lease_until) FROM collector_lease WHERE owner_id = ?", Long.class, instanceId);
+        return leaseUntil != null ? leaseUntil : 0L;
+    }
+}
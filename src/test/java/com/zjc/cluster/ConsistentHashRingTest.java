@@ -0,0 +1,93 @@
+package com.zjc.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 一致性哈希环测试
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    private static final int VIRTUAL_NODES = 100;
+
+    @Test
+    void emptyRingLocatesNothing() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), VIRTUAL_NODES);
+
+        assertTrue(ring.isEmpty());
+        assertNull(ring.locate("shard:0"));
+    }
+
+    @Test
+    void assignmentDoesNotDependOnInstanceOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), VIRTUAL_NODES);
+
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.locate("shard:" + i), reordered.locate("shard:" + i));
+        }
+    }
+
+    @Test
+    void distributesKeysEvenly() {
+        List<String> instances = Arrays.asList("a", "b", "c", "d");
+        ConsistentHashRing ring = new ConsistentHashRing(instances, VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.locate("shard:" + i), 1, Integer::sum);
+        }
+
+        assertEquals(instances.size(), counts.size());
+        double expected = (double) KEYS / instances.size();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            double ratio = entry.getValue() / expected;
+            assertTrue(ratio > 0.7 && ratio < 1.3, entry.getKey() + "分到的键数偏离均值过多: " + entry.getValue());
+        }
+    }
+
+    @Test
+    void joiningInstanceOnlyTakesKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "shard:" + i;
+            String owner = after.locate(key);
+            if (!owner.equals(before.locate(key))) {
+                // 归属变化的键只能转给新加入的实例
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "新实例接管的键数异常: " + moved);
+    }
+
+    @Test
+    void leavingInstanceOnlyGivesUpItsOwnKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c", "d"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "shard:" + i;
+            String owner = before.locate(key);
+            if (!"d".equals(owner)) {
+                assertEquals(owner, after.locate(key));
+            }
+        }
+    }
+}
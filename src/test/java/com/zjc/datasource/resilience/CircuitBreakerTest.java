@@ -0,0 +1,86 @@
+package com.zjc.datasource.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 熔断器测试
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 30_000L;
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire(0));
+            breaker.onFailure(0);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(1));
+    }
+
+    @Test
+    void halfOpenAllowsSingleTrial() {
+        CircuitBreaker breaker = openedAt(0);
+
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(OPEN_MILLIS + 1));
+    }
+
+    @Test
+    void cancelledTrialIsReleased() {
+        CircuitBreaker breaker = openedAt(0);
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+
+        // 试探调用被调用方取消，既不成功也不失败
+        breaker.release();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS + 1));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedTrialReopens() {
+        CircuitBreaker breaker = openedAt(0);
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+
+        breaker.onFailure(OPEN_MILLIS);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(OPEN_MILLIS + 1));
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS * 2));
+    }
+
+    @Test
+    void releaseWhenClosedHasNoEffect() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        assertTrue(breaker.tryAcquire(0));
+
+        breaker.release();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    private static CircuitBreaker openedAt(long now) {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquire(now);
+            breaker.onFailure(now);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
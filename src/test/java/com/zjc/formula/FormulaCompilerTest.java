@@ -0,0 +1,182 @@
+package com.zjc.formula;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 指标公式编译与求值测试
+ *
+ * @author zjc
+ * @since 2024-01-06
+ */
+class FormulaCompilerTest {
+
+    /**
+     * 号池10、20、30依次占用槽位0、1、2
+     */
+    private static final Map<Long, Integer> POOL_SLOTS = new LinkedHashMap<>();
+
+    static {
+        POOL_SLOTS.put(10L, 0);
+        POOL_SLOTS.put(20L, 1);
+        POOL_SLOTS.put(30L, 2);
+    }
+
+    /**
+     * 成员valid依次为5、20、8，槽位2没有数据；聚合valid为25、pressure为62.5
+     */
+    private final TestContext context = new TestContext()
+            .aggregate(FormulaMetric.VALID, 25)
+            .aggregate(FormulaMetric.TOTAL, 40)
+            .aggregate(FormulaMetric.PRESSURE, 62.5)
+            .aggregate(FormulaMetric.POOL_COUNT, 2)
+            .member(0, 5, 10)
+            .member(1, 20, 30)
+            .member(2, 8, 10)
+            .missing(2);
+
+    @Test
+    void respectsOperatorPrecedence() {
+        assertEquals(7.0, evaluate("1 + 2 * 3"));
+        assertEquals(9.0, evaluate("(1 + 2) * 3"));
+        assertEquals(1.0, evaluate("7 % 3"));
+        assertEquals(-4.0, evaluate("-(1 + 3)"));
+        assertEquals(2.5, evaluate("5 / 2"));
+    }
+
+    @Test
+    void readsAggregateMetrics() {
+        assertEquals(15.0, evaluate("total - valid"));
+        assertEquals(0.625, evaluate("pressure / 100"));
+        assertEquals(12.5, evaluate("valid / poolCount"));
+    }
+
+    @Test
+    void aggregatesMembersWithData() {
+        assertEquals(25.0, evaluate("sum(valid)"));
+        assertEquals(12.5, evaluate("avg(valid)"));
+        assertEquals(2.0, evaluate("count(valid)"));
+        assertEquals(40.0, evaluate("sum(total of 10, 20)"));
+        assertEquals(5.0, evaluate("sum(valid of 10, 30)"));
+    }
+
+    @Test
+    void minAndMaxOfMemberMetricAggregateMembers() {
+        assertEquals(5.0, evaluate("min(valid)"));
+        assertEquals(20.0, evaluate("max(valid)"));
+        assertEquals(20.0, evaluate("max(valid of 10, 20)"));
+        assertEquals(5.0, evaluate("min(valid of 10)"));
+    }
+
+    @Test
+    void minAndMaxOfExpressionsAreScalarFunctions() {
+        // pressure只在聚合层面有意义，单独作为参数时按普通函数求值
+        assertEquals(62.5, evaluate("max(pressure)"));
+        assertEquals(62.5, evaluate("min(pressure, 80)"));
+        assertEquals(10.0, evaluate("min(valid, 10)"));
+        assertEquals(25.0, evaluate("max(valid, 1, 3)"));
+        assertEquals(25.0, evaluate("max(valid + 0)"));
+        assertEquals(3.0, evaluate("max(1, 3, 2)"));
+    }
+
+    @Test
+    void emptyMemberAggregateIsNaN() {
+        assertTrue(Double.isNaN(evaluate("avg(valid of 30)")));
+        assertTrue(Double.isNaN(evaluate("min(valid of 30)")));
+        assertEquals(0.0, evaluate("count(valid of 30)"));
+    }
+
+    @Test
+    void appliesFunctions() {
+        assertEquals(3.0, evaluate("abs(0 - 3)"));
+        assertEquals(3.0, evaluate("round(2.6)"));
+        assertEquals(63.0, evaluate("round(pressure)"));
+    }
+
+    @Test
+    void foldsConstantSubexpressions() {
+        // 常量折叠后求值不访问上下文
+        MetricFormula formula = FormulaCompiler.compile("round(2 * 3.4) + abs(-1)", POOL_SLOTS, 3);
+        assertEquals(8.0, formula.evaluate(null));
+    }
+
+    @Test
+    void rejectsInvalidExpressions() {
+        assertRejected("");
+        assertRejected("1 +");
+        assertRejected("(1 + 2");
+        assertRejected("1 2");
+        assertRejected("valid $ 2");
+        assertRejected("unknown + 1");
+        assertRejected("foo(1)");
+        assertRejected("abs(1, 2)");
+        assertRejected("sum(1)");
+        assertRejected("sum(pressure)");
+        assertRejected("max(pressure of 10)");
+        assertRejected("sum(valid of 99)");
+        assertRejected("sum(valid of 1.5)");
+    }
+
+    @Test
+    void rejectsOverlongAndDeeplyNestedExpressions() {
+        assertRejected("1" + " + 1".repeat(FormulaCompiler.MAX_EXPRESSION_LENGTH / 4));
+        assertRejected("(".repeat(100) + "1" + ")".repeat(100));
+    }
+
+    private double evaluate(String expression) {
+        return FormulaCompiler.compile(expression, POOL_SLOTS, 3).evaluate(context);
+    }
+
+    private static void assertRejected(String expression) {
+        assertThrows(IllegalArgumentException.class, () -> FormulaCompiler.compile(expression, POOL_SLOTS, 3));
+    }
+
+    /**
+     * 按数组保存聚合值和成员值的求值上下文
+     */
+    private static final class TestContext implements FormulaContext {
+
+        private final Map<FormulaMetric, Double> aggregates = new EnumMap<>(FormulaMetric.class);
+        private final double[] valid = new double[3];
+        private final double[] total = new double[3];
+        private final boolean[] present = {true, true, true};
+
+        TestContext aggregate(FormulaMetric metric, double value) {
+            aggregates.put(metric, value);
+            return this;
+        }
+
+        TestContext member(int slot, double validValue, double totalValue) {
+            valid[slot] = validValue;
+            total[slot] = totalValue;
+            return this;
+        }
+
+        TestContext missing(int slot) {
+            present[slot] = false;
+            return this;
+        }
+
+        @Override
+        public double aggregate(FormulaMetric metric) {
+            return aggregates.getOrDefault(metric, Double.NaN);
+        }
+
+        @Override
+        public boolean hasMember(int slot) {
+            return present[slot];
+        }
+
+        @Override
+        public double member(int slot, FormulaMetric metric) {
+            return metric == FormulaMetric.TOTAL ? total[slot] : valid[slot];
+        }
+    }
+}
@@ -195,6 +195,15 @@ export const poolStatusApi = {
   // 获取号池历史趋势数据
   getPoolHistory: (poolId, params = {}) => api.get(`/pool-status/trend/${poolId}`, { params }),
   
+  // 增量获取号池历史趋势数据（只返回 after 之后的新样本）
+  getPoolHistorySince: (poolId, after) => api.get(`/pool-status/trend/${poolId}`, { params: { after } }),
+  
+  // 获取多个号池对齐到同一时间网格的趋势矩阵（对比图表）
+  getAlignedPoolHistory: (poolIds, params = {}) => api.get('/pool-status/trend/aligned', { params: { ...params, poolIds: poolIds.join(',') } }),
+  
+  // 获取所有公开号池的迷你趋势图数据
+  getSparklines: () => api.get('/pool-status/sparklines'),
+  
   // 获取号池状态统计信息
   getPoolStatistics: (poolId, params = {}) => api.get(`/pool-status/statistics/${poolId}`, { params }),
   
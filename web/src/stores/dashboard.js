@@ -9,6 +9,7 @@ export const useDashboardStore = defineStore('dashboard', () => {
   const selectedPoolId = ref(null)
   const chartData = ref({})
   const poolHistory = ref({})
+  const historyTimeRange = ref({}) // 每个号池当前展示的时间范围
   const selectedPoolStatus = ref(null) // 新增：存储选中号池的最新状态
   const loading = ref({
     pools: false,
@@ -57,10 +58,12 @@ export const useDashboardStore = defineStore('dashboard', () => {
     loading.value.pools = true
     error.value.pools = null
     try {
-      // 并行获取号池列表和所有号池的最新状态
-      const [poolsResponse, statusesResponse] = await Promise.all([
+      // 并行获取号池列表、所有号池的最新状态和迷你趋势图
+      // 迷你趋势图只是辅助信息，获取失败不影响号池列表
+      const [poolsResponse, statusesResponse, sparklinesResponse] = await Promise.all([
         poolApi.getPublicPools(),
-        poolStatusApi.getAllLatestPoolStatus()
+        poolStatusApi.getAllLatestPoolStatus(),
+        poolStatusApi.getSparklines().catch(() => null)
       ])
 
       if (poolsResponse.success && statusesResponse.success) {
@@ -73,12 +76,15 @@ export const useDashboardStore = defineStore('dashboard', () => {
           return map
         }, {})
 
-        // 将最新状态合并到号池列表中
+        const sparklineMap = buildSparklineMap(sparklinesResponse?.data)
+
+        // 将最新状态和迷你趋势图合并到号池列表中
         const enrichedPools = pools.map(pool => {
           const latestStatus = statusMap[pool.id] || pool.latestStatus || null
           return {
             ...pool,
-            latestStatus
+            latestStatus,
+            sparkline: sparklineMap[pool.id] || null
           }
         })
 
@@ -100,6 +106,20 @@ export const useDashboardStore = defineStore('dashboard', () => {
     }
   }
 
+  // 将列式迷你趋势图数据转换为 poolId -> 压力值数组 的查找表
+  const buildSparklineMap = (sparklines) => {
+    if (!sparklines || !Array.isArray(sparklines.series)) {
+      return {}
+    }
+    const scale = sparklines.pressureScale || 1
+    return sparklines.series.reduce((map, series) => {
+      if (series.offset < sparklines.points) {
+        map[series.poolId] = series.pressure.slice(series.offset).map(v => v / scale)
+      }
+      return map
+    }, {})
+  }
+
   // 获取总览统计数据
   const fetchOverviewStats = async () => {
     loading.value.overview = true
@@ -157,25 +177,8 @@ export const useDashboardStore = defineStore('dashboard', () => {
     
     try {
       // 根据时间范围计算参数
-      const now = Date.now()
-      let startTime, endTime = now
-      
-      switch (timeRange) {
-        case '1h':
-          startTime = now - 60 * 60 * 1000
-          break
-        case '24h':
-          startTime = now - 24 * 60 * 60 * 1000
-          break
-        case '7d':
-          startTime = now - 7 * 24 * 60 * 60 * 1000
-          break
-        case '30d':
-          startTime = now - 30 * 24 * 60 * 60 * 1000
-          break
-        default:
-          startTime = now - 24 * 60 * 60 * 1000
-      }
+      const endTime = Date.now()
+      const startTime = endTime - getTimeRangeMs(timeRange)
       
       const response = await poolStatusApi.getPoolHistory(poolId, { timeRange, startTime, endTime })
       
@@ -184,6 +187,7 @@ export const useDashboardStore = defineStore('dashboard', () => {
           poolHistory.value[poolId] = {}
         }
         poolHistory.value[poolId][timeRange] = response.data
+        historyTimeRange.value[poolId] = timeRange
         
         // 转换为图表数据格式
         chartData.value[poolId] = transformToChartData(response.data, timeRange)
@@ -201,6 +205,70 @@ export const useDashboardStore = defineStore('dashboard', () => {
     }
   }
 
+  // 增量刷新号池历史数据：只拉取已有数据之后的新样本并追加到图表
+  const refreshPoolHistory = async (poolId) => {
+    if (!poolId) return
+    
+    const timeRange = historyTimeRange.value[poolId] || '1h'
+    const records = poolHistory.value[poolId]?.[timeRange]
+    
+    // 还没有加载过该时间范围的数据，退回到完整加载
+    if (!records || records.length === 0) {
+      await Promise.all([
+        fetchPoolHistory(poolId, timeRange),
+        fetchLatestPoolStatus(poolId)
+      ])
+      return
+    }
+    
+    try {
+      const cursor = records.reduce((max, r) => Math.max(max, r.recordTime || 0), 0)
+      const response = await poolStatusApi.getPoolHistorySince(poolId, cursor)
+      
+      if (!response.success || !response.data) {
+        throw new Error(response.message || '增量获取历史数据失败')
+      }
+      
+      const delta = response.data
+      
+      // 新样本超过单次上限（例如长时间离线后），直接重新加载整个时间范围
+      if (delta.hasMore) {
+        await fetchPoolHistory(poolId, timeRange)
+      } else if (delta.records && delta.records.length > 0) {
+        // 追加新样本，并移除已滑出时间窗口的旧样本
+        const windowStart = Date.now() - getTimeRangeMs(timeRange)
+        const merged = records
+          .concat(delta.records)
+          .filter(r => r.recordTime >= windowStart)
+        poolHistory.value[poolId][timeRange] = merged
+        chartData.value[poolId] = transformToChartData(merged, timeRange)
+      }
+      
+      if (poolId === selectedPoolId.value) {
+        selectedPoolStatus.value = delta.latest || selectedPoolStatus.value
+      }
+    } catch (err) {
+      console.error('增量刷新历史数据失败:', err)
+      error.value.history = err.message || '增量刷新历史数据失败'
+    }
+  }
+
+  // 时间范围对应的毫秒数
+  const getTimeRangeMs = (timeRange) => {
+    switch (timeRange) {
+      case '1h':
+        return 60 * 60 * 1000
+      case '24h':
+        return 24 * 60 * 60 * 1000
+      case '7d':
+        return 7 * 24 * 60 * 60 * 1000
+      case '30d':
+        return 30 * 24 * 60 * 60 * 1000
+      default:
+        return 24 * 60 * 60 * 1000
+    }
+  }
+
   // 转换历史数据为图表格式
   const transformToChartData = (records) => {
     if (!records || !Array.isArray(records) || records.length === 0) {
@@ -379,12 +447,8 @@ export const useDashboardStore = defineStore('dashboard', () => {
         ])
 
         if (selectedPoolId.value) {
-          // 如果有选中的号池，也并行刷新其历史数据和最新状态
-          // 注意：此简化版实现未存储每个池子的时间范围，将使用默认值
-          await Promise.all([
-            fetchPoolHistory(selectedPoolId.value),
-            fetchLatestPoolStatus(selectedPoolId.value)
-          ])
+          // 如果有选中的号池，增量刷新其历史数据，响应中同时带有最新状态
+          await refreshPoolHistory(selectedPoolId.value)
         }
       } catch (error) {
         console.error('自动刷新失败:', error)
@@ -418,6 +482,7 @@ export const useDashboardStore = defineStore('dashboard', () => {
     selectedPoolId.value = null
     chartData.value = {}
     poolHistory.value = {}
+    historyTimeRange.value = {}
     Object.keys(loading.value).forEach(key => {
       loading.value[key] = false
     })
@@ -433,6 +498,7 @@ export const useDashboardStore = defineStore('dashboard', () => {
     selectedPoolStatus, // 新增
     chartData,
     poolHistory,
+    historyTimeRange,
     loading,
     error,
     refreshInterval,
@@ -447,6 +513,7 @@ export const useDashboardStore = defineStore('dashboard', () => {
     fetchPublicPools,
     fetchOverviewStats,
     fetchPoolHistory,
+    refreshPoolHistory,
     fetchLatestPoolStatus, // 新增
     setSelectedPool,
     getChartData,